@@ -0,0 +1,63 @@
+package javacore.coop.cachemusic.benchmarks;
+
+import javacore.coop.cachemusic.BuildResult;
+import javacore.coop.cachemusic.FileBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assembling of one track. Length of track is set by <code>-p partsPerTrack=...</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BuildBenchmark {
+    @Param({"1", "8"})
+    public int partsPerTrack;
+
+    private Path cacheFolder;
+    private Path outputFolder;
+    private List<String> parts;
+    private BuildResult lastResult;
+
+    @Setup(Level.Trial)
+    public void generateCache() throws IOException {
+        cacheFolder = Files.createTempDirectory("cachemusic-build");
+        outputFolder = Files.createTempDirectory("cachemusic-tracks");
+        CacheGenerator generator = new CacheGenerator(cacheFolder, 42);
+        parts = new ArrayList<>();
+        int audioLength = partsPerTrack * CacheGenerator.PART_SIZE_IN_BYTES - 1024;
+        for (Path part : generator.writeTrack(CacheGenerator.Tag.ID3v23, audioLength)) {
+            parts.add(part.toString());
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteTrack() throws IOException {
+        if (lastResult != null) {
+            Files.deleteIfExists(lastResult.getTrack());
+            lastResult = null;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCache() throws IOException {
+        CacheGenerator.delete(cacheFolder);
+        CacheGenerator.delete(outputFolder);
+    }
+
+    @Benchmark
+    public BuildResult build() throws IOException {
+        lastResult = FileBuilder.build(parts, outputFolder, "Benchmark");
+        return lastResult;
+    }
+}
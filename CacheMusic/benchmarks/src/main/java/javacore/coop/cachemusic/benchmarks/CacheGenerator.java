@@ -0,0 +1,305 @@
+package javacore.coop.cachemusic.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generator of synthetic Chrome media cache.<br>
+ * Writes MP3 tracks split to <code>f_</code> parts, like Chrome does.
+ * Tracks carry configurable mix of ID3v1, ID3v2.3 and untagged content.
+ */
+public class CacheGenerator {
+    public final static int PART_SIZE_IN_BYTES = 1024 * 1024;
+    public final static String DEFAULT_MIX = "id3v1=1,id3v23=1,none=1";
+
+    private final static String CACHE_FILE_NAME_FORMAT = "f_%06x";
+
+    // MPEG-1 Layer III, 128 kbit/s, 44100 Hz, no CRC, no padding
+    private final static byte[] MPEG_FRAME_HEADER = {(byte) 0xFF, (byte) 0xFB, (byte) 0x90, (byte) 0x00};
+    private final static int MPEG_FRAME_LENGTH_BYTES = 417;
+
+    /**
+     * Metadata of generated track
+     */
+    public enum Tag {NONE, ID3v1, ID3v23}
+
+    private final Path folder;
+    private final Random random;
+    private final int[] tagWeights;
+    private final int partSize;
+    private int nextPartId = 1;
+    private int nextTrackId = 1;
+
+    /**
+     * Makes generator of full-sized parts with {@link #DEFAULT_MIX} of tags.
+     *
+     * @param folder Folder for part files
+     * @param seed   Seed of random track lengths, tags and names
+     */
+    public CacheGenerator(Path folder, long seed) {
+        this(folder, seed, DEFAULT_MIX, PART_SIZE_IN_BYTES);
+    }
+
+    /**
+     * @param folder   Folder for part files
+     * @param seed     Seed of random track lengths, tags and names
+     * @param mix      Weights of tags, e.g. <code>id3v1=1,id3v23=2,none=1</code>. Missed tags have zero weight.
+     * @param partSize Max size of part. Smaller parts let to make caches with millions of parts.
+     * @throws IllegalArgumentException If mix can't be parsed or part size is out of range
+     */
+    public CacheGenerator(Path folder, long seed, String mix, int partSize) throws IllegalArgumentException {
+        if (partSize < 1 || partSize > PART_SIZE_IN_BYTES) {
+            throw new IllegalArgumentException("Part size must be in range 1.." + PART_SIZE_IN_BYTES);
+        }
+        this.folder = folder;
+        this.random = new Random(seed);
+        this.tagWeights = parseMix(mix);
+        this.partSize = partSize;
+    }
+
+    /**
+     * Parses weights of tags.
+     *
+     * @param mix Weights of tags, e.g. <code>id3v1=1,id3v23=2,none=1</code>
+     * @return Weights indexed by {@link Tag#ordinal()}
+     * @throws IllegalArgumentException If mix can't be parsed or all weights are zero
+     */
+    static int[] parseMix(String mix) throws IllegalArgumentException {
+        int[] weights = new int[Tag.values().length];
+        int total = 0;
+        for (String item : mix.split(",")) {
+            String[] pair = item.trim().split("=");
+            if (pair.length != 2) throw new IllegalArgumentException("Incorrect mix item: " + item);
+
+            Tag tag = null;
+            for (Tag candidate : Tag.values()) {
+                if (candidate.name().equalsIgnoreCase(pair[0].trim())) tag = candidate;
+            }
+            if (tag == null) throw new IllegalArgumentException("Unknown tag at mix: " + pair[0]);
+
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) throw new IllegalArgumentException("Weight of tag must not be negative: " + item);
+            weights[tag.ordinal()] = weight;
+            total += weight;
+        }
+        if (total == 0) throw new IllegalArgumentException("At least one tag must have positive weight");
+        return weights;
+    }
+
+    /**
+     * Writes tracks with 1..4 parts each until <code>parts</code> part files are written.
+     * Tags of tracks are chosen randomly by weights of mix.
+     *
+     * @param parts Count of part files to write
+     * @return Paths to written parts in cache order
+     * @throws IOException If part can't be written
+     */
+    public List<Path> generate(int parts) throws IOException {
+        List<Path> written = new ArrayList<>(parts);
+        while (written.size() < parts) {
+            int trackParts = Math.min(1 + random.nextInt(4), parts - written.size());
+            int audioLength = (trackParts - 1) * partSize + 1 + random.nextInt(Math.max(1, partSize / 2));
+            written.addAll(writeTrack(nextTag(), audioLength));
+        }
+        return written;
+    }
+
+    /**
+     * Chooses tag of next track by weights of mix.
+     */
+    private Tag nextTag() {
+        int total = 0;
+        for (int weight : tagWeights) total += weight;
+
+        int point = random.nextInt(total);
+        for (Tag tag : Tag.values()) {
+            point -= tagWeights[tag.ordinal()];
+            if (point < 0) return tag;
+        }
+        return Tag.NONE;
+    }
+
+    /**
+     * Writes one track.
+     *
+     * @param tag         Metadata of track
+     * @param audioLength Length of audio data in bytes. It is rounded down to whole MPEG frames.
+     * @return Paths to written parts in track's order
+     * @throws IOException If part can't be written
+     */
+    public List<Path> writeTrack(Tag tag, int audioLength) throws IOException {
+        int trackId = nextTrackId++;
+        audioLength = Math.max(1, audioLength / MPEG_FRAME_LENGTH_BYTES) * MPEG_FRAME_LENGTH_BYTES;
+        String artist = "Artist " + (trackId % 50);
+        String title = "Title " + trackId;
+
+        byte[] head = tag == Tag.ID3v23 ? id3v23(artist, title) : new byte[0];
+        byte[] tail = tag == Tag.ID3v1 ? id3v1(artist, title) : new byte[0];
+        ByteBuffer track = ByteBuffer.allocate(head.length + audioLength + tail.length);
+        track.put(head);
+        audio(track, audioLength);
+        track.put(tail);
+        track.flip();
+
+        List<Path> parts = new ArrayList<>();
+        while (track.hasRemaining()) {
+            ByteBuffer part = track.slice();
+            part.limit(Math.min(partSize, track.remaining()));
+            Path partPath = folder.resolve(String.format(CACHE_FILE_NAME_FORMAT, nextPartId++));
+            Files.write(partPath, toArray(part));
+            track.position(track.position() + part.limit());
+            parts.add(partPath);
+        }
+        return parts;
+    }
+
+    /**
+     * Makes ID3v2.3 tag with title and artist frames.
+     */
+    static byte[] id3v23(String artist, String title) {
+        byte[] titleFrame = textFrame("TIT2", title);
+        byte[] artistFrame = textFrame("TPE1", artist);
+        int padding = 64;
+        int size = titleFrame.length + artistFrame.length + padding;
+
+        ByteBuffer tag = ByteBuffer.allocate(10 + size);
+        tag.put("ID3".getBytes(StandardCharsets.ISO_8859_1)).put((byte) 3).put((byte) 0).put((byte) 0);
+        tag.put((byte) ((size >> 21) & 0x7F)).put((byte) ((size >> 14) & 0x7F))
+                .put((byte) ((size >> 7) & 0x7F)).put((byte) (size & 0x7F));
+        tag.put(titleFrame).put(artistFrame);
+        return tag.array();
+    }
+
+    /**
+     * Makes ISO-8859-1 text frame of ID3v2.3 tag.
+     */
+    private static byte[] textFrame(String id, String text) {
+        byte[] data = text.getBytes(StandardCharsets.ISO_8859_1);
+        ByteBuffer frame = ByteBuffer.allocate(10 + 1 + data.length);
+        frame.put(id.getBytes(StandardCharsets.ISO_8859_1)).putInt(1 + data.length).putShort((short) 0);
+        frame.put((byte) 0).put(data);
+        return frame.array();
+    }
+
+    /**
+     * Makes 128 bytes ID3v1 tag.
+     */
+    static byte[] id3v1(String artist, String title) {
+        byte[] tag = new byte[128];
+        put(tag, 0, "TAG", 3);
+        put(tag, 3, title, 30);
+        put(tag, 33, artist, 30);
+        tag[127] = (byte) 0xFF; // unknown genre
+        return tag;
+    }
+
+    private static void put(byte[] target, int offset, String value, int maxLength) {
+        byte[] bytes = value.getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(bytes, 0, target, offset, Math.min(bytes.length, maxLength));
+    }
+
+    /**
+     * Writes MPEG frames. The last frame is cut, if <code>length</code> is not a multiple of frame length.
+     */
+    private void audio(ByteBuffer target, int length) {
+        byte[] frame = new byte[MPEG_FRAME_LENGTH_BYTES];
+        System.arraycopy(MPEG_FRAME_HEADER, 0, frame, 0, MPEG_FRAME_HEADER.length);
+        for (int written = 0; written < length; written += frame.length) {
+            for (int i = MPEG_FRAME_HEADER.length; i < frame.length; i++) {
+                frame[i] = (byte) random.nextInt(0xFF); // never makes 0xFF, so frame sync isn't repeated
+            }
+            target.put(frame, 0, Math.min(frame.length, length - written));
+        }
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Generates cache folder from command line.
+     *
+     * @param args Program arguments
+     * @throws IOException If part can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        final String PROGRAM_USAGE = "Program usage: CacheGenerator <cache_folder> <parts> " +
+                "[-m <mix>] [-p <part_size>] [-s <seed>]\nParameters:\n" +
+                "   -m <mix>\t\tWeights of tags. Default: " + DEFAULT_MIX + "\n" +
+                "   -p <part_size>\tMax size of part in bytes. Default: " + PART_SIZE_IN_BYTES + "\n" +
+                "   -s <seed>\t\tSeed of random generator. Default: 0\n";
+        if (args.length < 2 || args.length % 2 != 0) {
+            System.out.println(PROGRAM_USAGE);
+            return;
+        }
+
+        Path folder = Paths.get(args[0]);
+        String mix = DEFAULT_MIX;
+        int partSize = PART_SIZE_IN_BYTES;
+        long seed = 0;
+        try {
+            int parts = Integer.parseInt(args[1]);
+            for (int i = 2; i < args.length; i += 2) {
+                switch (args[i]) {
+                    case "-m":
+                        mix = args[i + 1];
+                        break;
+                    case "-p":
+                        partSize = Integer.parseInt(args[i + 1]);
+                        break;
+                    case "-s":
+                        seed = Long.parseLong(args[i + 1]);
+                        break;
+                    default:
+                        System.err.println("Found unknown parameter: " + args[i]);
+                        System.out.println(PROGRAM_USAGE);
+                        return;
+                }
+            }
+
+            Files.createDirectories(folder);
+            long started = System.nanoTime();
+            List<Path> written = new CacheGenerator(folder, seed, mix, partSize).generate(parts);
+            System.out.format("Generated %d parts at %s in %d ms\n", written.size(), folder,
+                    (System.nanoTime() - started) / 1_000_000);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Incorrect parameters: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes folder with all its content.
+     *
+     * @param folder Folder to delete
+     * @throws IOException If something can't be deleted
+     */
+    public static void delete(Path folder) throws IOException {
+        if (Files.notExists(folder)) return;
+
+        Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,132 @@
+package javacore.coop.cachemusic.benchmarks;
+
+import javacore.coop.cachemusic.HarvestManifest;
+import javacore.coop.cachemusic.HarvestPipeline;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end harvest of synthetic cache.<br>
+ * Generates cache (or takes existing one), runs full harvest and reports files/sec, MB/sec and peak heap.
+ */
+public class HarvestThroughput {
+    private final static double BYTES_IN_MEGABYTE = 1024 * 1024;
+    private final static double NANOS_IN_SECOND = 1_000_000_000d;
+
+    private HarvestThroughput() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final String PROGRAM_USAGE = "Program usage: HarvestThroughput (-n <parts> | -c <cache_folder>) " +
+                "[-m <mix>] [-p <part_size>] [-t <assemblers>] [-k]\nParameters:\n" +
+                "   -n <parts>\t\tGenerate synthetic cache with this count of parts\n" +
+                "   -c <cache_folder>\tHarvest existing cache folder\n" +
+                "   -m <mix>\t\tWeights of tags of generated cache. Default: " + CacheGenerator.DEFAULT_MIX + "\n" +
+                "   -p <part_size>\tMax size of generated part in bytes. Default: " +
+                CacheGenerator.PART_SIZE_IN_BYTES + "\n" +
+                "   -t <assemblers>\tCount of assembling threads. Default: " + HarvestPipeline.DEFAULT_ASSEMBLERS + "\n" +
+                "   -k\t\t\tKeep generated cache and harvested tracks\n";
+
+        int parts = 0;
+        Path cacheFolder = null;
+        String mix = CacheGenerator.DEFAULT_MIX;
+        int partSize = CacheGenerator.PART_SIZE_IN_BYTES;
+        int assemblers = HarvestPipeline.DEFAULT_ASSEMBLERS;
+        boolean keep = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-n":
+                        parts = Integer.parseInt(args[++i]);
+                        break;
+                    case "-c":
+                        cacheFolder = Paths.get(args[++i]);
+                        break;
+                    case "-m":
+                        mix = args[++i];
+                        break;
+                    case "-p":
+                        partSize = Integer.parseInt(args[++i]);
+                        break;
+                    case "-t":
+                        assemblers = Integer.parseInt(args[++i]);
+                        break;
+                    case "-k":
+                        keep = true;
+                        break;
+                    default:
+                        System.err.println("Found unknown parameter: " + args[i]);
+                        System.out.println(PROGRAM_USAGE);
+                        return;
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Incorrect parameters");
+            System.out.println(PROGRAM_USAGE);
+            return;
+        }
+        if ((parts > 0) == (cacheFolder != null)) {
+            System.out.println(PROGRAM_USAGE);
+            return;
+        }
+
+        boolean generated = cacheFolder == null;
+        if (generated) {
+            cacheFolder = Files.createTempDirectory("cachemusic-cache");
+            long started = System.nanoTime();
+            new CacheGenerator(cacheFolder, 0, mix, partSize).generate(parts);
+            System.out.format("Generated %d parts at %s in %.1f s\n", parts, cacheFolder,
+                    (System.nanoTime() - started) / NANOS_IN_SECOND);
+        }
+        Path outputFolder = Files.createTempDirectory("cachemusic-tracks");
+
+        try {
+            long partsCount;
+            try (Stream<Path> files = Files.list(cacheFolder)) {
+                partsCount = files.filter(path -> path.getFileName().toString().startsWith("f_")).count();
+            }
+
+            System.gc();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+            }
+
+            HarvestPipeline pipeline = new HarvestPipeline(cacheFolder, outputFolder,
+                    HarvestManifest.empty(outputFolder, cacheFolder), assemblers);
+            long started = System.nanoTime();
+            pipeline.run();
+            double seconds = (System.nanoTime() - started) / NANOS_IN_SECOND;
+
+            long peakHeap = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) peakHeap += pool.getPeakUsage().getUsed();
+            }
+
+            System.out.format("\n== Harvest throughput\n" +
+                            "  Parts: %d, songs: %d, assemblers: %d\n" +
+                            "  Wall time: %.2f s\n" +
+                            "  Files/sec: %.1f\n" +
+                            "  MB/sec: %.1f\n" +
+                            "  Peak heap: %.1f MB\n",
+                    partsCount, pipeline.getSongsFound(), assemblers,
+                    seconds,
+                    partsCount / seconds,
+                    pipeline.getBytesWritten() / BYTES_IN_MEGABYTE / seconds,
+                    peakHeap / BYTES_IN_MEGABYTE);
+        } finally {
+            if (!keep) {
+                CacheGenerator.delete(outputFolder);
+                if (generated) CacheGenerator.delete(cacheFolder);
+            } else {
+                System.out.format("Cache: %s\nTracks: %s\n", cacheFolder, outputFolder);
+            }
+        }
+    }
+}
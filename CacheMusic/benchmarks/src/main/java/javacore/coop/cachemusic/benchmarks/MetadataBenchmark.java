@@ -0,0 +1,61 @@
+package javacore.coop.cachemusic.benchmarks;
+
+import javacore.coop.cachemusic.Metadata;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Format detection and tag parsing of single part.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetadataBenchmark {
+    private Path cacheFolder;
+    private Path id3v23Part;
+    private Path id3v1Part;
+
+    @Setup(Level.Trial)
+    public void generateCache() throws IOException {
+        cacheFolder = Files.createTempDirectory("cachemusic-metadata");
+        CacheGenerator generator = new CacheGenerator(cacheFolder, 42);
+        int audioLength = 2 * CacheGenerator.PART_SIZE_IN_BYTES;
+
+        id3v23Part = generator.writeTrack(CacheGenerator.Tag.ID3v23, audioLength).get(0);
+        List<Path> id3v1Track = generator.writeTrack(CacheGenerator.Tag.ID3v1, audioLength);
+        id3v1Part = id3v1Track.get(id3v1Track.size() - 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCache() throws IOException {
+        CacheGenerator.delete(cacheFolder);
+    }
+
+    @Benchmark
+    public Metadata.FormatName getFormatAtStart() {
+        return Metadata.getFormatAtStart(id3v23Part);
+    }
+
+    @Benchmark
+    public Metadata.FormatName getFormatAtEnd() {
+        return Metadata.getFormatAtEnd(id3v1Part);
+    }
+
+    @Benchmark
+    public Metadata readID3v1() {
+        return Metadata.readID3v1(id3v1Part.toString());
+    }
+
+    @Benchmark
+    public Metadata readID3v23() {
+        return Metadata.readID3v23(id3v23Part.toString());
+    }
+}
@@ -0,0 +1,51 @@
+package javacore.coop.cachemusic.benchmarks;
+
+import javacore.coop.cachemusic.CacheReader;
+import javacore.coop.cachemusic.SongGroup;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Scanning of whole cache folder. Size of cache is set by <code>-p parts=...</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ScanBenchmark {
+    @Param({"100", "1000"})
+    public int parts;
+
+    private Path cacheFolder;
+
+    @Setup(Level.Trial)
+    public void generateCache() throws IOException {
+        cacheFolder = Files.createTempDirectory("cachemusic-scan");
+        new CacheGenerator(cacheFolder, 42).generate(parts);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCache() throws IOException {
+        CacheGenerator.delete(cacheFolder);
+    }
+
+    @Benchmark
+    public List<List<String>> scan() {
+        return CacheReader.scan(cacheFolder.toString());
+    }
+
+    @Benchmark
+    public long stream() throws IOException {
+        try (Stream<SongGroup> songs = CacheReader.stream(cacheFolder)) {
+            return songs.count();
+        }
+    }
+}
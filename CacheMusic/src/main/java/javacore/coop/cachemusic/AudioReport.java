@@ -0,0 +1,88 @@
+package javacore.coop.cachemusic;
+
+/**
+ * Result of validation of MPEG audio frames of assembled track.
+ */
+public class AudioReport {
+    /**
+     * Verdict about track
+     */
+    public enum Status {
+        /**
+         * All audio frames are complete and follow each other
+         */
+        OK,
+        /**
+         * Last frame is incomplete: track ends earlier than audio
+         */
+        TRUNCATED,
+        /**
+         * Frame sync was lost inside audio: some bytes are not frames
+         */
+        CORRUPTED,
+        /**
+         * No MPEG audio frames found
+         */
+        NO_AUDIO
+    }
+
+    private static final double MILLIS_IN_SECOND = 1000d;
+
+    private final long frames;
+    private final long audioBytes;
+    private final double durationSeconds;
+    private final long lostBytes;
+    private final long missingBytes;
+
+    AudioReport(long frames, long audioBytes, double durationSeconds, long lostBytes, long missingBytes) {
+        this.frames = frames;
+        this.audioBytes = audioBytes;
+        this.durationSeconds = durationSeconds;
+        this.lostBytes = lostBytes;
+        this.missingBytes = missingBytes;
+    }
+
+    /**
+     * @return Verdict about track. Truncation is reported before corruption.
+     */
+    public Status getStatus() {
+        if (frames == 0) return Status.NO_AUDIO;
+        if (missingBytes > 0) return Status.TRUNCATED;
+        if (lostBytes > 0) return Status.CORRUPTED;
+        return Status.OK;
+    }
+
+    /**
+     * @return Average bitrate in kbit/s or <code>0</code> if track has no audio
+     */
+    public int getBitrateKbps() {
+        return durationSeconds > 0 ? (int) Math.round(audioBytes * 8 / durationSeconds / MILLIS_IN_SECOND) : 0;
+    }
+
+    // GETTERS
+    public long getFrames() {
+        return frames;
+    }
+
+    public long getAudioBytes() {
+        return audioBytes;
+    }
+
+    public double getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    /**
+     * @return Count of bytes between frames, that are not frames nor tags
+     */
+    public long getLostBytes() {
+        return lostBytes;
+    }
+
+    /**
+     * @return Count of bytes, that last frame misses
+     */
+    public long getMissingBytes() {
+        return missingBytes;
+    }
+}
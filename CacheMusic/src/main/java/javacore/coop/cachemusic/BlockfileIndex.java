@@ -0,0 +1,338 @@
+package javacore.coop.cachemusic;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reader of Chromium's blockfile cache (<code>index</code> and <code>data_N</code> files), which keeps media
+ * at external <code>f_XXXXXX</code> parts.<br>
+ * Media is cached as sparse entry: every megabyte of response is child entry with key
+ * <code>Range_&lt;url&gt;:&lt;signature&gt;:&lt;child&gt;</code>, which body is external part.
+ * Entries are walked through hash table of index, so only parts of media responses are found
+ * and no part file is opened.<br>
+ * Index is trusted only if cache was closed properly: Chromium sets crash flag of index header, while cache
+ * is open, and clears it at clean shutdown. Index of cache, that is still written or was left after a crash,
+ * may point to stale entries and miss new ones, so it is not read.<br>
+ * Simple Cache backend keeps data inside per-entry files and has no <code>f_</code> parts at all,
+ * so it is not read: such folders are scanned part by part.
+ */
+class BlockfileIndex implements Closeable {
+    final static String INDEX_FILE_NAME = "index";
+
+    private final static String DATA_FILE_NAME_PREFIX = "data_";
+    private final static int INDEX_MAGIC = 0xC103CAC3;
+    private final static int BLOCK_FILE_MAGIC = 0xC104CAC3;
+    private final static int INDEX_VERSION_2 = 2;
+    private final static int INDEX_VERSION_3 = 3;
+    private final static int INDEX_TABLE_LENGTH_OFFSET = 28;
+    private final static int INDEX_CRASH_OFFSET = 32;
+    private final static int DEFAULT_INDEX_TABLE_LENGTH = 0x10000;
+    private final static int MIN_INDEX_HEADER_LENGTH = 256;
+    private final static int BLOCK_FILE_HEADER_LENGTH = 8192;
+
+    // Cache address: initialized bit, file type, and either external file number or block file, blocks and start
+    private final static int ADDRESS_INITIALIZED = 0x8000_0000;
+    private final static int FILE_TYPE_EXTERNAL = 0;
+    private final static int FILE_TYPE_RANKINGS = 1;
+    private final static int[] BLOCK_SIZES = {0, 36, 256, 1024, 4096};
+    private final static int EXTERNAL_FILE_NUMBER_MASK = 0x0FFF_FFFF;
+
+    // Entry store: 256 bytes block, key continues to next blocks of entry
+    private final static int ENTRY_NEXT_OFFSET = 4;
+    private final static int ENTRY_STATE_OFFSET = 20;
+    private final static int ENTRY_KEY_LENGTH_OFFSET = 32;
+    private final static int ENTRY_LONG_KEY_OFFSET = 36;
+    private final static int ENTRY_DATA_SIZE_OFFSET = 40;
+    private final static int ENTRY_DATA_ADDRESS_OFFSET = 56;
+    private final static int ENTRY_KEY_OFFSET = 96;
+    private final static int ENTRY_STATE_NORMAL = 0;
+    private final static int HEADERS_STREAM = 0;
+    private final static int BODY_STREAM = 1;
+    private final static int MAX_HEADERS_LENGTH = 64 * 1024;
+    private final static int MAX_KEY_LENGTH = 64 * 1024;
+
+    private final static String SPARSE_KEY_PREFIX = "Range_";
+    private final static String CONTENT_TYPE_HEADER = "\0content-type:";
+    private final static String[] MEDIA_CONTENT_TYPES = {"audio/", "application/octet-stream", "binary/octet-stream"};
+
+    private final Path cacheFolder;
+    private final Map<Integer, FileChannel> blockFiles = new HashMap<>();
+
+    private BlockfileIndex(Path cacheFolder) {
+        this.cacheFolder = cacheFolder;
+    }
+
+    /**
+     * Checks if folder is blockfile cache.
+     *
+     * @param cacheFolder Path to cache folder
+     * @return <code>true</code> if folder has index of blockfile cache
+     */
+    static boolean exists(Path cacheFolder) {
+        return Files.isRegularFile(cacheFolder.resolve(INDEX_FILE_NAME))
+                && Files.isRegularFile(cacheFolder.resolve(DATA_FILE_NAME_PREFIX + 1));
+    }
+
+    /**
+     * Reads index of blockfile cache and finds parts of media responses.<br>
+     * Parts of one response follow each other in order of their ranges.
+     * Responses follow in cache order: by number of their first part.
+     * Responses, which content type is unknown (e.g. headers were evicted), are considered as media.
+     *
+     * @param cacheFolder Path to cache folder
+     * @return Absolute paths to existing parts of media responses
+     * @throws IOException If index or block files can't be read, are not blockfile cache
+     *                     or cache wasn't closed properly
+     */
+    static List<Path> listMediaParts(Path cacheFolder) throws IOException {
+        try (BlockfileIndex index = new BlockfileIndex(cacheFolder.toAbsolutePath())) {
+            return index.mediaParts();
+        }
+    }
+
+    /**
+     * Walks every bucket of hash table and collects external bodies of entries.
+     */
+    private List<Path> mediaParts() throws IOException {
+        ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(cacheFolder.resolve(INDEX_FILE_NAME)))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        if (index.limit() < MIN_INDEX_HEADER_LENGTH || index.getInt(0) != INDEX_MAGIC) {
+            throw new IOException("Not an index of blockfile cache: " + cacheFolder.resolve(INDEX_FILE_NAME));
+        }
+        int majorVersion = index.getInt(4) >>> 16;
+        if (majorVersion != INDEX_VERSION_2 && majorVersion != INDEX_VERSION_3) {
+            throw new IOException("Unsupported version of blockfile cache: " + Integer.toHexString(index.getInt(4)));
+        }
+        if (index.getInt(INDEX_CRASH_OFFSET) != 0) {
+            throw new IOException("Blockfile cache is in use or wasn't closed properly, its index may be stale");
+        }
+        int tableLength = index.getInt(INDEX_TABLE_LENGTH_OFFSET);
+        if (tableLength == 0) tableLength = DEFAULT_INDEX_TABLE_LENGTH;
+        int headerLength = index.limit() - tableLength * 4; // header size differs between versions
+        if (tableLength < 0 || headerLength < MIN_INDEX_HEADER_LENGTH) {
+            throw new IOException("Hash table of blockfile cache is damaged");
+        }
+
+        Map<String, String> contentTypes = new HashMap<>();
+        Map<String, List<long[]>> responseParts = new HashMap<>(); // url - {child, part number}
+        Set<Integer> visited = new HashSet<>();
+        for (int bucket = 0; bucket < tableLength; bucket++) {
+            int address = index.getInt(headerLength + bucket * 4);
+            while ((address & ADDRESS_INITIALIZED) != 0 && visited.add(address)) {
+                ByteBuffer entry = readBlocks(address);
+                if (entry == null) break;
+
+                readEntry(entry, contentTypes, responseParts);
+                address = entry.getInt(ENTRY_NEXT_OFFSET);
+            }
+        }
+
+        List<List<long[]>> responses = new ArrayList<>();
+        for (Map.Entry<String, List<long[]>> response : responseParts.entrySet()) {
+            if (!isMedia(contentTypes.get(response.getKey()))) continue;
+
+            List<long[]> parts = response.getValue();
+            parts.sort((a, b) -> Long.compare(a[0], b[0]));
+            responses.add(parts);
+        }
+        responses.sort((a, b) -> Long.compare(firstPartNumber(a), firstPartNumber(b)));
+
+        List<Path> mediaParts = new ArrayList<>();
+        for (List<long[]> parts : responses) {
+            for (long[] part : parts) {
+                Path partPath = cacheFolder.resolve(PartOrder.fileName(part[1]));
+                if (Files.exists(partPath)) mediaParts.add(partPath);
+            }
+        }
+        return mediaParts;
+    }
+
+    /**
+     * Remembers content type of response or external body of its range.
+     */
+    private void readEntry(ByteBuffer entry, Map<String, String> contentTypes, Map<String, List<long[]>> responseParts)
+            throws IOException {
+        if (entry.getInt(ENTRY_STATE_OFFSET) != ENTRY_STATE_NORMAL) return; // evicted or doomed
+
+        String key = readKey(entry);
+        if (key == null) return;
+
+        if (!key.startsWith(SPARSE_KEY_PREFIX)) {
+            String contentType = readContentType(entry);
+            if (contentType != null) contentTypes.put(key, contentType);
+        }
+
+        int bodyAddress = entry.getInt(ENTRY_DATA_ADDRESS_OFFSET + BODY_STREAM * 4);
+        if ((bodyAddress & ADDRESS_INITIALIZED) == 0 || fileType(bodyAddress) != FILE_TYPE_EXTERNAL) return;
+
+        String url = key;
+        long child = 0;
+        if (key.startsWith(SPARSE_KEY_PREFIX)) { // Range_<url>:<signature>:<child>
+            int childSeparator = key.lastIndexOf(':');
+            int signatureSeparator = childSeparator < 0 ? -1 : key.lastIndexOf(':', childSeparator - 1);
+            if (signatureSeparator < SPARSE_KEY_PREFIX.length()) return;
+            try {
+                child = Long.parseUnsignedLong(key.substring(childSeparator + 1), 16);
+            } catch (NumberFormatException e) {
+                return;
+            }
+            url = key.substring(SPARSE_KEY_PREFIX.length(), signatureSeparator);
+        }
+        responseParts.computeIfAbsent(url, u -> new ArrayList<>())
+                .add(new long[]{child, bodyAddress & EXTERNAL_FILE_NUMBER_MASK});
+    }
+
+    /**
+     * Reads key of entry, which is stored at entry's blocks or, if it is long, at separate address.
+     */
+    private String readKey(ByteBuffer entry) throws IOException {
+        int keyLength = entry.getInt(ENTRY_KEY_LENGTH_OFFSET);
+        if (keyLength <= 0 || keyLength > MAX_KEY_LENGTH) return null;
+
+        int longKeyAddress = entry.getInt(ENTRY_LONG_KEY_OFFSET);
+        if ((longKeyAddress & ADDRESS_INITIALIZED) != 0) {
+            ByteBuffer key = readData(longKeyAddress, keyLength);
+            return key == null ? null : new String(key.array(), 0, keyLength, StandardCharsets.UTF_8);
+        }
+        if (ENTRY_KEY_OFFSET + keyLength > entry.limit()) return null;
+        return new String(entry.array(), ENTRY_KEY_OFFSET, keyLength, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Searches for Content-Type at serialized headers of response. Header lines are separated by NUL.
+     *
+     * @return Lower case content type or <code>null</code> if it is unknown
+     */
+    private String readContentType(ByteBuffer entry) throws IOException {
+        int headersLength = entry.getInt(ENTRY_DATA_SIZE_OFFSET + HEADERS_STREAM * 4);
+        int headersAddress = entry.getInt(ENTRY_DATA_ADDRESS_OFFSET + HEADERS_STREAM * 4);
+        if (headersLength <= 0 || (headersAddress & ADDRESS_INITIALIZED) == 0) return null;
+
+        ByteBuffer headers = readData(headersAddress, Math.min(headersLength, MAX_HEADERS_LENGTH));
+        if (headers == null) return null;
+
+        String text = new String(headers.array(), 0, headers.limit(), StandardCharsets.ISO_8859_1)
+                .toLowerCase(Locale.ROOT);
+        int start = text.indexOf(CONTENT_TYPE_HEADER);
+        if (start < 0) return null;
+        start += CONTENT_TYPE_HEADER.length();
+        int end = text.indexOf('\0', start);
+        return text.substring(start, end < 0 ? text.length() : end).trim();
+    }
+
+    private static boolean isMedia(String contentType) {
+        if (contentType == null) return true;
+        for (String mediaType : MEDIA_CONTENT_TYPES) {
+            if (contentType.startsWith(mediaType)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads data of stream, which may be stored at block file or at external file.
+     *
+     * @return Data or <code>null</code> if address is broken
+     */
+    private ByteBuffer readData(int address, int length) throws IOException {
+        if (fileType(address) == FILE_TYPE_EXTERNAL) {
+            Path file = cacheFolder.resolve(PartOrder.fileName(address & EXTERNAL_FILE_NUMBER_MASK));
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return read(channel, 0, length);
+            } catch (EOFException e) {
+                return null;
+            }
+        }
+        ByteBuffer blocks = readBlocks(address);
+        if (blocks == null || blocks.limit() < length) return null;
+        blocks.limit(length);
+        return blocks;
+    }
+
+    /**
+     * Reads all blocks of address at block file.
+     *
+     * @return Blocks or <code>null</code> if address doesn't point to block file
+     */
+    private ByteBuffer readBlocks(int address) throws IOException {
+        int fileType = fileType(address);
+        if (fileType <= FILE_TYPE_RANKINGS || fileType >= BLOCK_SIZES.length) return null;
+
+        int blockSize = BLOCK_SIZES[fileType];
+        int blocks = ((address >>> 24) & 0b11) + 1;
+        int fileNumber = (address >>> 16) & 0xFF;
+        int startBlock = address & 0xFFFF;
+        FileChannel blockFile = blockFile(fileNumber);
+        try {
+            return read(blockFile, BLOCK_FILE_HEADER_LENGTH + (long) startBlock * blockSize, blocks * blockSize);
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Opens block file once and checks its header.
+     */
+    private FileChannel blockFile(int fileNumber) throws IOException {
+        FileChannel blockFile = blockFiles.get(fileNumber);
+        if (blockFile != null) return blockFile;
+
+        blockFile = FileChannel.open(cacheFolder.resolve(DATA_FILE_NAME_PREFIX + fileNumber), StandardOpenOption.READ);
+        blockFiles.put(fileNumber, blockFile);
+        if (read(blockFile, 0, 4).getInt(0) != BLOCK_FILE_MAGIC) {
+            throw new IOException("Not a block file of blockfile cache: " + DATA_FILE_NAME_PREFIX + fileNumber);
+        }
+        return blockFile;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new EOFException();
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int fileType(int address) {
+        return (address >>> 28) & 0b111;
+    }
+
+    private static long firstPartNumber(List<long[]> parts) {
+        long first = Long.MAX_VALUE;
+        for (long[] part : parts) {
+            first = Math.min(first, part[1]);
+        }
+        return first;
+    }
+
+    /**
+     * Closes opened block files.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException error = null;
+        for (FileChannel blockFile : blockFiles.values()) {
+            try {
+                blockFile.close();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        if (error != null) throw error;
+    }
+}
@@ -0,0 +1,123 @@
+package javacore.coop.cachemusic;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of direct buffers, that are big enough to hold whole cache part.<br>
+ * Buffers are borrowed for reading of parts by assembler and are returned after it,
+ * so steady harvest doesn't allocate buffers. Count of buffers, that are out at once, is limited:
+ * if all of them are borrowed, borrower waits until one is returned. So direct memory of pool never exceeds
+ * <code>bufferSize * maxBuffers</code>, however many threads read parts.
+ */
+public class BufferPool {
+    public final static int DEFAULT_MAX_BUFFERS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+    private final static BufferPool SHARED =
+            new BufferPool((int) CacheReader.CACHE_PART_SIZE_IN_BYTES, DEFAULT_MAX_BUFFERS);
+
+    private final int bufferSize;
+    private final int maxBuffers;
+    private final BlockingQueue<ByteBuffer> idleBuffers;
+    private final Semaphore permits;
+    private final AtomicLong allocated = new AtomicLong();
+    private final AtomicLong borrowed = new AtomicLong();
+
+    /**
+     * @param bufferSize Capacity of every buffer in bytes
+     * @param maxBuffers Max count of buffers, that are borrowed at once
+     */
+    public BufferPool(int bufferSize, int maxBuffers) {
+        if (maxBuffers < 2) throw new IllegalArgumentException("Pool must hold at least 2 buffers: " + maxBuffers);
+
+        this.bufferSize = bufferSize;
+        this.maxBuffers = maxBuffers;
+        this.idleBuffers = new ArrayBlockingQueue<>(maxBuffers);
+        this.permits = new Semaphore(maxBuffers);
+    }
+
+    /**
+     * @return Pool of buffers sized to cache part, shared by {@link TrackContent} and {@link HarvestPlan}
+     */
+    public static BufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Takes idle buffer or allocates new one, waiting while all buffers are borrowed.
+     * Buffer must be returned by {@link #release(ByteBuffer)}.
+     *
+     * @return Cleared direct buffer
+     */
+    public ByteBuffer borrow() {
+        permits.acquireUninterruptibly();
+        return take();
+    }
+
+    /**
+     * Takes several buffers at once. Borrower, that needs more than one buffer, must take them by this method:
+     * buffers taken one by one may wait for each other forever.
+     *
+     * @param count Count of buffers, not more than {@link #getMaxBuffers()}
+     * @return Cleared direct buffers. Every one must be returned by {@link #release(ByteBuffer)}.
+     */
+    public ByteBuffer[] borrow(int count) {
+        if (count > maxBuffers) throw new IllegalArgumentException("Pool holds only " + maxBuffers + " buffers");
+
+        permits.acquireUninterruptibly(count);
+        ByteBuffer[] buffers = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            buffers[i] = take();
+        }
+        return buffers;
+    }
+
+    private ByteBuffer take() {
+        borrowed.incrementAndGet();
+        ByteBuffer buffer = idleBuffers.poll();
+        if (buffer == null) {
+            allocated.incrementAndGet();
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns borrowed buffer to pool. Buffer must not be used after it.
+     *
+     * @param buffer Buffer, that was borrowed from this pool, or <code>null</code>
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.capacity() != bufferSize) return;
+
+        buffer.clear();
+        idleBuffers.offer(buffer); // there is always place: only borrowed buffers are returned
+        permits.release();
+    }
+
+    // GETTERS
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getMaxBuffers() {
+        return maxBuffers;
+    }
+
+    /**
+     * @return Count of buffers allocated by pool since start, not more than {@link #getMaxBuffers()}
+     */
+    public long getAllocated() {
+        return allocated.get();
+    }
+
+    /**
+     * @return Count of borrowings since start
+     */
+    public long getBorrowed() {
+        return borrowed.get();
+    }
+}
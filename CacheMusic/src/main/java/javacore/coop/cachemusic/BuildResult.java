@@ -0,0 +1,69 @@
+package javacore.coop.cachemusic;
+
+import java.nio.file.Path;
+
+/**
+ * Result of assembling one track from its parts.
+ */
+public class BuildResult {
+    private static final double NANOS_IN_SECOND = 1_000_000_000d;
+
+    private final Path track;
+    private final long bytesWritten;
+    private final long elapsedNanos;
+    private final boolean duplicate;
+    private final AudioReport audio;
+
+    BuildResult(Path track, long bytesWritten, long elapsedNanos, boolean duplicate, AudioReport audio) {
+        this.track = track;
+        this.bytesWritten = bytesWritten;
+        this.elapsedNanos = elapsedNanos;
+        this.duplicate = duplicate;
+        this.audio = audio;
+    }
+
+    // GETTERS
+    public Path getTrack() {
+        return track;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return <code>true</code> if song wasn't written, because {@link #getTrack()} has the same content
+     */
+    public boolean isDuplicate() {
+        return duplicate;
+    }
+
+    /**
+     * @return Validation of MPEG frames of song
+     */
+    public AudioReport getAudio() {
+        return audio;
+    }
+
+    /**
+     * @return Assembly speed in bytes per second
+     */
+    public double getBytesPerSecond() {
+        return bytesPerSecond(bytesWritten, elapsedNanos);
+    }
+
+    /**
+     * Calculates speed of copying.
+     *
+     * @param bytes Count of copied bytes
+     * @param nanos Time spent for copying in nanoseconds
+     * @return Speed in bytes per second or <code>0</code> if no time was spent
+     */
+    public static double bytesPerSecond(long bytes, long nanos) {
+        return nanos > 0 ? bytes * NANOS_IN_SECOND / nanos : 0;
+    }
+}
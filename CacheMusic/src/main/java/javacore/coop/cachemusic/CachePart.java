@@ -0,0 +1,90 @@
+package javacore.coop.cachemusic;
+
+import java.nio.file.Path;
+
+/**
+ * Compact descriptor of cache part file.<br>
+ * Holds everything that scanning needs to know about part, so part's file is opened only once.
+ */
+public class CachePart {
+    private final Path path;
+    private final long size;
+    private final long lastModified;
+    private final Metadata.FormatName formatAtStart;
+    private final Metadata.FormatName formatAtEnd;
+    private final Metadata metadata;
+    private final String songName;
+
+    CachePart(Path path, long size, long lastModified, Metadata.FormatName formatAtStart,
+              Metadata.FormatName formatAtEnd, Metadata metadata) {
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.formatAtStart = formatAtStart;
+        this.formatAtEnd = formatAtEnd;
+        this.metadata = metadata;
+        this.songName = CacheReader.songName(metadata);
+    }
+
+    /**
+     * Makes descriptor of part, that was probed at one of previous runs.<br>
+     * Such descriptor has no {@link Metadata}, only song name made from it.
+     */
+    CachePart(Path path, long size, long lastModified, Metadata.FormatName formatAtStart,
+              Metadata.FormatName formatAtEnd, String songName) {
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.formatAtStart = formatAtStart;
+        this.formatAtEnd = formatAtEnd;
+        this.metadata = null;
+        this.songName = songName;
+    }
+
+    // GETTERS
+    public Path getPath() {
+        return path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return Time of last modification in milliseconds since the epoch
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public Metadata.FormatName getFormatAtStart() {
+        return formatAtStart;
+    }
+
+    public Metadata.FormatName getFormatAtEnd() {
+        return formatAtEnd;
+    }
+
+    /**
+     * @return Read metadata or <code>null</code> if part has no readable metadata
+     */
+    public Metadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * @return Name of song from metadata or <code>null</code> if not found
+     */
+    public String getSongName() {
+        return songName;
+    }
+
+    /**
+     * Checks for metadata at part (at start or at end of file).
+     *
+     * @return <code>true</code> - if contains metadata<br><code>false</code> - if not found
+     */
+    public boolean hasMetadata() {
+        return formatAtStart != Metadata.FormatName.NONE || formatAtEnd != Metadata.FormatName.NONE;
+    }
+}
@@ -0,0 +1,603 @@
+package javacore.coop.cachemusic;
+
+import java.io.*;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class CacheReader {
+
+    final static String CACHE_FILE_NAME_PREFIX = "f_";
+    final static long CACHE_PART_SIZE_IN_BYTES = 1024 * 1024;
+    final static double BYTES_IN_MEGABYTE = 1024 * 1024;
+
+    private final static String MEDIA_CACHE_FOLDER = "Media Cache";
+    private final static String XDG_CACHE_HOME = "XDG_CACHE_HOME";
+    private final static String[] LINUX_BROWSER_FOLDERS =
+            {"google-chrome", "google-chrome-beta", "google-chrome-unstable", "chromium"};
+
+    private CacheReader() {
+    }
+
+    /**
+     * Scans folder and make lists of song parts for build.<br>
+     * Each <code>List&lt;String&gt;</code> contains paths to parts of song, that must be assembled.
+     * Whole result is kept in memory, use {@link #stream(Path)} for big caches.
+     *
+     * @param cacheFolderPath Path to cache folder
+     * @return List of songs that must be assembled. Each song presented as list of part files.<br>
+     * If received <code>cacheFolderPath</code> not exists or is not a directory - returns <code>null</code>.
+     * @throws IllegalArgumentException Cache folder not exists or is not directory
+     */
+    public static List<List<String>> scan(String cacheFolderPath) throws IllegalArgumentException {
+        Path cacheFolder = Paths.get(cacheFolderPath);
+        if (!Files.exists(cacheFolder) || !Files.isDirectory(cacheFolder)) {
+            throw new IllegalArgumentException("Received path cache folder not exist or is not folder");
+        } else {
+            List<List<String>> songs = new ArrayList<>();
+            try (Stream<SongGroup> songGroups = stream(cacheFolder)) {
+                songGroups.forEach(song -> {
+                    List<String> paths = new ArrayList<>(song.size());
+                    for (Path part : song.getPaths()) {
+                        paths.add(part.toString());
+                    }
+                    songs.add(paths);
+                });
+            } catch (IOException | UncheckedIOException ex) {
+                System.err.println("Something went wrong when trying to scan a cache folder!\n" + ex.getMessage());
+            }
+
+            return songs;
+        }
+    }
+
+    /**
+     * Lazily scans folder and groups parts to songs.<br>
+     * Folder is listed to parts in cache order (see {@link #listParts(Path)}). Parts are probed by batches,
+     * while stream is consumed, and every song is passed as soon as its last part is found,
+     * so memory holds only a few songs at once.
+     *
+     * @param cacheFolder Path to cache folder
+     * @return Ordered stream of songs that must be assembled
+     * @throws IOException If cache folder can't be opened.
+     *                     Errors while stream is consumed are thrown as {@link UncheckedIOException}.
+     */
+    public static Stream<SongGroup> stream(Path cacheFolder) throws IOException {
+        return stream(cacheFolder, null);
+    }
+
+    /**
+     * Lazily scans folder and groups parts to songs.<br>
+     * Parts, that are known to <code>manifest</code> and weren't changed since previous harvest, are not probed again.
+     *
+     * @param cacheFolder Path to cache folder
+     * @param manifest    Manifest of previous harvest or <code>null</code> to probe every part
+     * @return Ordered stream of songs that must be assembled
+     * @throws IOException If cache folder can't be read.
+     *                     Errors while stream is consumed are thrown as {@link UncheckedIOException}.
+     */
+    public static Stream<SongGroup> stream(Path cacheFolder, HarvestManifest manifest) throws IOException {
+        SongIterator songs = new SongIterator(listParts(cacheFolder).iterator(), manifest, null);
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(songs, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(songs::close);
+    }
+
+    /**
+     * Scans folder and passes every song to <code>listener</code> as soon as all its parts are found.<br>
+     * Parts are grouped in cache order (see {@link #listParts(Path)}). Parts are probed by batches,
+     * so first songs are found long before the whole folder is probed. Parts, that are known to <code>manifest</code>
+     * and weren't changed since previous harvest, are not probed again.
+     *
+     * @param cacheFolder Path to cache folder
+     * @param manifest    Manifest of previous harvest or <code>null</code> to probe every part
+     * @param listener    Receiver of found songs
+     * @param probers     Executor to probe parts at
+     * @throws IOException          If cache folder can't be read
+     * @throws InterruptedException If listener was interrupted
+     */
+    static void scan(Path cacheFolder, HarvestManifest manifest, ScanListener listener, ExecutorService probers)
+            throws IOException, InterruptedException {
+        HarvestMetrics metrics = HarvestMetrics.shared();
+        long listingStarted = System.nanoTime();
+        List<Path> partPaths = listParts(cacheFolder);
+        metrics.record(HarvestMetrics.Phase.LISTING, System.nanoTime() - listingStarted);
+        metrics.addPartsListed(partPaths.size());
+        listener.onListed(partPaths.size()); // total is listed first for progress, parts are probed lazily
+
+        try (SongIterator songs = new SongIterator(partPaths.iterator(), manifest, listener, probers)) {
+            while (songs.hasNext()) {
+                listener.onSong(songs.next());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Lists part files of cache folder in cache order.<br>
+     * Blockfile cache is listed through its index, so only parts of media responses are probed.
+     * If there is no index or it can't be read - every part file of folder is listed.
+     *
+     * @param cacheFolder Path to cache folder
+     * @return Absolute paths to part files
+     * @throws IOException If cache folder can't be read
+     */
+    static List<Path> listParts(Path cacheFolder) throws IOException {
+        if (BlockfileIndex.exists(cacheFolder)) {
+            try {
+                return BlockfileIndex.listMediaParts(cacheFolder);
+            } catch (IOException e) {
+                System.err.println("Cache index can't be used, every part will be probed.\n" + e.getMessage());
+            }
+        }
+        return PartOrder.list(cacheFolder);
+    }
+
+    /**
+     * Searches at <code>partsPaths</code> for name in MP3 metadata.
+     *
+     * @param partsPaths List with file names
+     * @return First found name of file or <code>null</code> if not found
+     */
+    public static String searchSongName(List<String> partsPaths) {
+        String songName = null;
+        for (String partPath : partsPaths) {
+            songName = searchSongName(partPath);
+            if (songName != null) break;
+        }
+
+        return songName;
+    }
+
+    /**
+     * Searches at <code>filePath</code> for name in MP3 metadata.
+     *
+     * @param filePath Path to file
+     * @return Name of file or <code>null</code> if not found
+     */
+    public static String searchSongName(String filePath) {
+        try {
+            return MetadataCache.shared().get(Paths.get(filePath)).getSongName();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Makes song name from artist and title at metadata.
+     *
+     * @param metadata Read metadata, may be <code>null</code>
+     * @return Name of song or <code>null</code> if metadata has no artist and title
+     */
+    static String songName(Metadata metadata) {
+        String songName = null;
+
+        if (metadata != null) {
+            String songArtist = metadata.getArtist();
+            if (songArtist != null && !songArtist.trim().isEmpty()) {
+                songName = songArtist.trim();
+            }
+
+            String songTitle = metadata.getTitle();
+            if (songTitle != null && !songTitle.trim().equals("")) {
+                if (songName != null) {
+                    songName += " - " + songTitle.trim();
+                } else {
+                    songName = songTitle.trim();
+                }
+            }
+        }
+
+        return songName;
+    }
+
+    /**
+     * Seaching for media caches of all Chrome and Chromium profiles by user's OS.
+     *
+     * @return Paths to Media Cache folders, that exist. Empty list if browsers have no media cache.
+     */
+    static List<Path> detectCacheFolders() {
+        String userOS = System.getProperty("os.name").toLowerCase();
+        Path home = Paths.get(System.getProperty("user.home"));
+        List<Path> browserFolders = new ArrayList<>();
+
+        if (userOS.contains("win")) {
+            // WINDOWS
+            // <ROOT>:\Users\<USERNAME>\AppData\Local\Google\Chrome\User Data\<PROFILE>\Media Cache
+            Path localAppData = home.resolve(Paths.get("AppData", "Local"));
+            browserFolders.add(localAppData.resolve(Paths.get("Google", "Chrome", "User Data")));
+            browserFolders.add(localAppData.resolve(Paths.get("Chromium", "User Data")));
+        } else if (userOS.contains("mac")) {
+            // MAC OS
+            throw new UnsupportedOperationException();
+        } else if (userOS.contains("nix") || userOS.contains("nux") || userOS.contains("aix")) {
+            // UNIX
+            // $XDG_CACHE_HOME/google-chrome/<PROFILE>/Media\ Cache/, $XDG_CACHE_HOME is $HOME/.cache by default
+            String xdgCacheHome = System.getenv(XDG_CACHE_HOME);
+            Path cacheHome = xdgCacheHome == null || xdgCacheHome.isEmpty()
+                    ? home.resolve(".cache")
+                    : Paths.get(xdgCacheHome);
+            for (String browser : LINUX_BROWSER_FOLDERS) {
+                browserFolders.add(cacheHome.resolve(browser));
+            }
+        } else if (userOS.contains("sunos")) {
+            // SOLARIS
+            throw new UnsupportedOperationException();
+        } else {
+            // UNKNOWN OS
+            throw new UnsupportedOperationException("Unknown OS!");
+        }
+
+        List<Path> cacheFolders = new ArrayList<>();
+        for (Path browserFolder : browserFolders) {
+            if (!Files.isDirectory(browserFolder)) continue;
+
+            List<Path> profiles = new ArrayList<>(); // Default, Profile 1, Profile 2...
+            try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(browserFolder)) {
+                for (Path profile : directoryStream) {
+                    if (Files.isDirectory(profile.resolve(MEDIA_CACHE_FOLDER))) profiles.add(profile);
+                }
+            } catch (IOException e) {
+                System.err.println("Browser profiles can't be listed: " + browserFolder + "\n" + e.getMessage());
+            }
+            Collections.sort(profiles);
+            for (Path profile : profiles) {
+                cacheFolders.add(profile.resolve(MEDIA_CACHE_FOLDER).toAbsolutePath());
+            }
+        }
+
+        return cacheFolders;
+    }
+
+    /**
+     * Plans harvest and prints tracks, that would be assembled, and estimated time. Nothing is written.
+     *
+     * @param cacheFolders Paths to cache folders
+     * @param outputFolder Folder with harvested tracks
+     * @param manifest     Manifest of previous harvest
+     * @param filter       Filter of songs by metadata
+     * @param hashContent  Find duplicates by content hash instead of size
+     */
+    private static void printPlan(List<Path> cacheFolders, Path outputFolder, HarvestManifest manifest,
+                                  TrackFilter filter, boolean hashContent) {
+        System.out.println("\nPlanned tracks:");
+        HarvestPlan plan;
+        try {
+            plan = HarvestPlan.make(cacheFolders, outputFolder, manifest, filter, hashContent, track -> {
+                String songName = track.getSongName();
+                System.out.format("  %s - %d parts, %.1f MB\n",
+                        songName == null ? FileBuilder.DEFAULT_SONG_NAME : songName,
+                        track.size(), track.getBytes() / BYTES_IN_MEGABYTE);
+            });
+        } catch (IOException ex) {
+            System.err.println("Something went wrong when trying to scan a cache folder!\n" + ex.getMessage());
+            return;
+        }
+
+        long estimatedNanos = plan.getEstimatedNanos();
+        System.out.format(
+                "\n== Plan:\n  Analysed part files: %d.\n  Found songs: %d.\n  Planned tracks: %d.\n" +
+                        "  Skipped songs harvested before: %d.\n  Expected duplicate songs: %d (%s).\n" +
+                        "  Filtered out songs: %d.\n" +
+                        "  To copy: %.1f MB (read speed %.1f MB/s).\n  Estimated time: %s.\n",
+                plan.getPartsAnalysed(), plan.getSongsFound(), plan.getSongsPlanned(),
+                plan.getSongsSkipped(), plan.getSongsDuplicated(),
+                plan.isDuplicatesHashed() ? "by content hash"
+                        : "estimate by size of parts before trimming of overlaps, use --hash to compare content",
+                plan.getSongsFiltered(),
+                plan.getBytesToCopy() / BYTES_IN_MEGABYTE, plan.getBytesPerSecond() / BYTES_IN_MEGABYTE,
+                estimatedNanos < 0 ? "unknown" : String.format("%.1f s", estimatedNanos / 1e9));
+    }
+
+    /**
+     * Default program's entry point
+     *
+     * @param args Program arguments
+     */
+    public static void main(String[] args) {
+        final String PROGRAM_USAGE = "Program usage: CacheReader [-o <output_folder>] [-c <cache_folder>] [-f]" +
+                " [-t <assemblers>] [-x <executor>] [-w] [--plan [--hash]] [-z <archive>]\n" +
+                "                     [--artist <pattern>] [--title <pattern>] [--format <pattern>]\nParameters:\n" +
+                "   -o <output_folder>\tDestination folder for found songs. Default path: " +
+                FileBuilder.DEFAULT_OUTPUT_FOLDER + "\n" +
+                "   -c <cache_folder>\tPath to folder with cache files. May be repeated to harvest several caches.\n" +
+                "\t\t\tDefault: Media Cache folders of all Chrome and Chromium profiles\n" +
+                "   -f\t\t\tFull harvest: ignore parts harvested before and process whole cache\n" +
+                "   -t <assemblers>\tCount of threads, that assemble songs. Default: " +
+                HarvestPipeline.DEFAULT_ASSEMBLERS + "\n" +
+                "   -x <executor>\tThreads, that probe parts and assemble songs: fixed, forkjoin or virtual " +
+                "(Java 21+). Default: " + ExecutorMode.DEFAULT.name().toLowerCase().replace("_", "") + "\n" +
+                "   -w\t\t\tWatch mode: keep running and harvest new songs as soon as they appear at cache\n" +
+                "   -z <archive>\t\tWrite all tracks to one ZIP (stored entries) or .tar archive instead of " +
+                "a file per track. Every run exports the whole cache\n" +
+                "   --plan\t\tDry run: print tracks, that would be assembled, and estimated time, write nothing\n" +
+                "   --hash\t\tWith --plan: find duplicates by content hash. Reads every planned song, " +
+                "as long as harvest itself\n" +
+                "   --artist <pattern>\tHarvest only songs of matching artist\n" +
+                "   --title <pattern>\tHarvest only songs with matching title\n" +
+                "   --format <pattern>\tHarvest only songs with matching tag version: ID3v1, ID3v22, ID3v23, " +
+                "ID3v24,\n\t\t\tID3v2 (version can't be read) or NONE. E.g. ID3v2* matches any ID3v2 tag\n" +
+                "   Patterns are globs (* - any text, ? - any character) or regular expressions after 'regex:', " +
+                "case is ignored\n";
+
+        String arg0 = args.length > 0 ? args[0].toLowerCase() : "";
+        if (args.length > 0 && (arg0.equals("help") || arg0.equals("?") || arg0.equals("/?"))) {
+            System.out.println(PROGRAM_USAGE);
+            return;
+        }
+
+        Path outputFolder = null;
+        List<Path> cacheFolders = new ArrayList<>();
+        boolean fullHarvest = false;
+        boolean watch = false;
+        boolean plan = false;
+        boolean hashContent = false;
+        Path archivePath = null;
+        String artistPattern = null;
+        String titlePattern = null;
+        String formatPattern = null;
+        int assemblers = HarvestPipeline.DEFAULT_ASSEMBLERS;
+        ExecutorMode executorMode = ExecutorMode.DEFAULT;
+
+        String lastArg = "";
+        final String ARG_OUTPUT = "-o";
+        final String ARG_CACHE = "-c";
+        final String ARG_FULL = "-f";
+        final String ARG_ASSEMBLERS = "-t";
+        final String ARG_WATCH = "-w";
+        final String ARG_EXECUTOR = "-x";
+        final String ARG_PLAN = "--plan";
+        final String ARG_HASH = "--hash";
+        final String ARG_ARCHIVE = "-z";
+        final String ARG_ARTIST = "--artist";
+        final String ARG_TITLE = "--title";
+        final String ARG_FORMAT = "--format";
+        List<String> argPrefixes = new ArrayList<String>() {
+            {
+                add(ARG_OUTPUT);
+                add(ARG_CACHE);
+                add(ARG_FULL);
+                add(ARG_ASSEMBLERS);
+                add(ARG_WATCH);
+                add(ARG_EXECUTOR);
+                add(ARG_PLAN);
+                add(ARG_HASH);
+                add(ARG_ARCHIVE);
+                add(ARG_ARTIST);
+                add(ARG_TITLE);
+                add(ARG_FORMAT);
+            }
+        };
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i].toLowerCase();
+                if (lastArg.isEmpty() && arg.equals(ARG_FULL)) {
+                    fullHarvest = true;
+                } else if (lastArg.isEmpty() && arg.equals(ARG_WATCH)) {
+                    watch = true;
+                } else if (lastArg.isEmpty() && arg.equals(ARG_PLAN)) {
+                    plan = true;
+                } else if (lastArg.isEmpty() && arg.equals(ARG_HASH)) {
+                    hashContent = true;
+                } else if (lastArg.isEmpty() && argPrefixes.contains(arg)) {
+                    lastArg = arg;
+                } else {
+                    if (argPrefixes.contains(args[i])) {
+                        System.err.format("Error: Waited for value of '%s' parameter, but found parameter: %s\n",
+                                lastArg, args[i]);
+                        return;
+                    }
+                    switch (lastArg) {
+                        case ARG_OUTPUT:
+                            outputFolder = Paths.get(args[i]);
+                            lastArg = "";
+                            break;
+                        case ARG_CACHE:
+                            Path cachePath = Paths.get(args[i]);
+                            if (!Files.exists(cachePath)) {
+                                System.err.println(
+                                        "Error: Received <cache_folder> not exists or program don't have access to folder!");
+                                return;
+                            }
+                            if (!Files.isDirectory(cachePath)) {
+                                System.err.println("Error: Received <cache_folder> is not folder!");
+                                return;
+                            }
+                            cacheFolders.add(cachePath);
+                            lastArg = "";
+                            break;
+                        case ARG_ASSEMBLERS:
+                            assemblers = Integer.parseInt(args[i]);
+                            if (assemblers < 1) {
+                                System.err.println("Error: Received <assemblers> must be positive number!");
+                                return;
+                            }
+                            lastArg = "";
+                            break;
+                        case ARG_EXECUTOR:
+                            executorMode = ExecutorMode.fromName(args[i]);
+                            if (!executorMode.isSupported()) {
+                                System.err.println("Error: Received <executor> is not supported by this Java!");
+                                return;
+                            }
+                            lastArg = "";
+                            break;
+                        case ARG_ARCHIVE:
+                            archivePath = Paths.get(args[i]);
+                            lastArg = "";
+                            break;
+                        case ARG_ARTIST:
+                            artistPattern = args[i];
+                            lastArg = "";
+                            break;
+                        case ARG_TITLE:
+                            titlePattern = args[i];
+                            lastArg = "";
+                            break;
+                        case ARG_FORMAT:
+                            formatPattern = args[i];
+                            lastArg = "";
+                            break;
+                        default:
+                            System.err.println("Found unknown parameter: " + args[i]);
+                            System.out.println(PROGRAM_USAGE);
+                            return;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Incorrect parameters");
+            return;
+        }
+        if (watch && cacheFolders.size() > 1) {
+            System.err.println("Error: Watch mode can watch only one <cache_folder>!");
+            return;
+        }
+        if (hashContent && !plan) {
+            System.err.println("Error: Content hashing is used only by --plan!");
+            return;
+        }
+        if (watch && archivePath != null) {
+            System.err.println("Error: Watch mode can't write tracks to archive!");
+            return;
+        }
+        TrackFilter filter;
+        try {
+            filter = new TrackFilter(artistPattern, titlePattern, formatPattern);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            return;
+        }
+        System.out.format("Starting program with parameters:\n\tOutput folder: %s\n",
+                outputFolder == null ? "[default] " + FileBuilder.DEFAULT_OUTPUT_FOLDER : outputFolder);
+        try {
+            if (cacheFolders.isEmpty()) {
+                cacheFolders = detectCacheFolders();
+                if (cacheFolders.isEmpty()) {
+                    System.err.println("Error: Media cache of Chrome or Chromium is not found, use -c <cache_folder>!");
+                    return;
+                }
+                if (watch && cacheFolders.size() > 1) {
+                    System.err.println("Error: Several browser profiles are found, choose one <cache_folder> to watch!");
+                    return;
+                }
+                for (Path cacheFolder : cacheFolders) {
+                    System.out.format("\tCache folder: [default] %s\n", cacheFolder);
+                }
+            } else {
+                for (Path cacheFolder : cacheFolders) {
+                    System.out.format("\tCache folder: %s\n", cacheFolder);
+                }
+            }
+            System.out.format("\tExecutor: %s\n", executorMode.name().toLowerCase().replace("_", ""));
+            if (!filter.isAll()) {
+                System.out.format("\tFilter: artist %s, title %s, format %s\n",
+                        artistPattern == null ? "*" : artistPattern,
+                        titlePattern == null ? "*" : titlePattern,
+                        formatPattern == null ? "*" : formatPattern);
+            }
+            Path output = outputFolder == null ? FileBuilder.DEFAULT_OUTPUT_FOLDER : outputFolder;
+            HarvestManifest manifest = fullHarvest
+                    ? HarvestManifest.empty(output, cacheFolders)
+                    : HarvestManifest.load(output, cacheFolders);
+            if (plan) {
+                printPlan(cacheFolders, output, manifest, filter, hashContent);
+                return;
+            }
+            HarvestMetrics metrics = HarvestMetrics.shared();
+            metrics.register();
+            TrackArchive archive = null;
+            if (archivePath != null) {
+                try {
+                    archive = TrackArchive.create(archivePath);
+                } catch (IOException ex) {
+                    System.err.println("Archive can't be created!\n" + ex.getMessage());
+                    return;
+                }
+                System.out.format("\tArchive: %s (%s)\n", archive.getFile(), archive.getFormat());
+            }
+            SongAssembler assembler = archive == null
+                    ? new SongAssembler(output, manifest, TrackIndex.load(output), filter)
+                    : new SongAssembler(output, manifest, archive, filter);
+            CacheWatcher watcher = null;
+            if (watch) {
+                try {
+                    watcher = new CacheWatcher(cacheFolders.get(0), assembler, CacheWatcher.DEFAULT_DEBOUNCE_MILLIS,
+                            executorMode);
+                } catch (IOException ex) {
+                    System.err.println("Cache folder can't be watched!\n" + ex.getMessage());
+                    return;
+                }
+            }
+            HarvestPipeline pipeline = new HarvestPipeline(cacheFolders, assembler, assemblers, executorMode);
+            long started = System.nanoTime();
+            try {
+                pipeline.run();
+            } catch (IOException ex) {
+                System.err.println("Something went wrong when trying to scan a cache folder!\n" + ex.getMessage());
+                if (archive != null) archive.discard();
+                return;
+            } catch (InterruptedException ex) {
+                System.err.println("\nHarvest was interrupted!");
+                if (archive != null) archive.discard();
+                return;
+            }
+            if (archive != null) {
+                try {
+                    archive.close();
+                } catch (IOException e) {
+                    System.err.println("\nArchive can't be finished!\n" + e.getMessage());
+                    return;
+                }
+            }
+            long harvestNanos = System.nanoTime() - started;
+            if (archive == null) {
+                try {
+                    manifest.save();
+                } catch (IOException e) {
+                    System.err.println("\nHarvest manifest can't be saved!\n" + e.getMessage());
+                }
+            }
+            System.out.format(
+                    "\nCache was successfully read!\n== Statistics:\n  Analysed part files: %d.\n  Found songs: %d.\n" +
+                            "  Skipped songs harvested before: %d.\n  Dropped duplicate songs: %d.\n" +
+                            "  Filtered out songs: %d.\n  Written: %.1f MB (%.1f MB/s).\n  Incomplete tracks: %d (see %s).",
+                    pipeline.getFilesAnalysed(), pipeline.getSongsFound(), pipeline.getSongsSkipped(),
+                    pipeline.getSongsDuplicated(), pipeline.getSongsFiltered(),
+                    pipeline.getBytesWritten() / BYTES_IN_MEGABYTE,
+                    BuildResult.bytesPerSecond(pipeline.getBytesWritten(), harvestNanos) / BYTES_IN_MEGABYTE,
+                    assembler.getReport().getIncompleteTracks(), assembler.getReport().getFile());
+            System.out.format("\n  Phases: %s.", metrics.summary());
+            try {
+                metrics.dump(output.resolve(HarvestMetrics.FILE_NAME));
+                System.out.format("\n  Metrics: %s", output.resolve(HarvestMetrics.FILE_NAME));
+            } catch (IOException e) {
+                System.err.println("\nHarvest metrics can't be saved!\n" + e.getMessage());
+            }
+            if (watcher != null) {
+                System.out.println("\n\nWatching cache folder for new songs. Press Ctrl+C to stop.");
+                try (CacheWatcher cacheWatcher = watcher) {
+                    cacheWatcher.run();
+                } catch (IOException ex) {
+                    System.err.println("Something went wrong when trying to watch a cache folder!\n" + ex.getMessage());
+                } catch (InterruptedException ex) {
+                    System.err.println("\nWatching was interrupted!");
+                }
+            }
+        } catch (UnsupportedOperationException e) {
+            System.err.println("Error: " + e.getMessage() + " at");
+            e.printStackTrace();
+            return;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package javacore.coop.cachemusic;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Continuous harvest of cache folder.<br>
+ * Listens to events of cache folder and keeps state of found parts in memory, so folder is never rescanned.
+ * Part is probed when it wasn't changed for debounce period. Song is assembled as soon as next song starts.
+ * Last song is assembled only when cache folder stays quiet for song idle period, that is much longer than
+ * debounce period: stream, that is buffered slowly or paused, must not be split into several tracks.
+ */
+public class CacheWatcher implements Closeable {
+    public final static long DEFAULT_DEBOUNCE_MILLIS = 2000;
+    public final static long DEFAULT_SONG_IDLE_MILLIS = 10 * 60 * 1000;
+
+    private final Path cacheFolder;
+    private final HarvestManifest manifest;
+    private final SongAssembler assembler;
+    private final long debounceMillis;
+    private final long songIdleMillis;
+    private final WatchService watchService;
+    private final ExecutorService probers;
+
+    // Parts waiting for end of writing and time of their last event
+    private final Map<Path, Long> pendingParts = new HashMap<>();
+    // Parts, that were passed to grouper, until their song is assembled
+    private final Set<Path> groupedParts = new HashSet<>();
+    private final SongGrouper grouper = new SongGrouper(CacheReader.CACHE_PART_SIZE_IN_BYTES);
+    private long lastEventMillis;
+    private boolean songOpened = false;
+
+    /**
+     * Starts listening of cache folder. Events are collected until {@link #run()} is called,
+     * so watcher can be created before one-shot harvest without missing parts.
+     *
+     * @param cacheFolder    Path to cache folder
+     * @param outputFolder   Folder that will contain found songs
+     * @param manifest       Manifest of harvest. Parts recorded at manifest are not harvested again.
+     * @param debounceMillis Period without changes, after which part is considered to be written
+     * @throws IOException If cache folder can't be watched
+     */
+    public CacheWatcher(Path cacheFolder, Path outputFolder, HarvestManifest manifest, long debounceMillis)
+            throws IOException {
+        this(cacheFolder, new SongAssembler(outputFolder, manifest), debounceMillis);
+    }
+
+    /**
+     * Starts listening of cache folder.
+     *
+     * @param cacheFolder    Path to cache folder
+     * @param assembler      Assembler of found songs. Parts recorded at its manifest are not harvested again.
+     * @param debounceMillis Period without changes, after which part is considered to be written
+     * @throws IOException If cache folder can't be watched
+     */
+    public CacheWatcher(Path cacheFolder, SongAssembler assembler, long debounceMillis) throws IOException {
+        this(cacheFolder, assembler, debounceMillis, ExecutorMode.DEFAULT);
+    }
+
+    /**
+     * Starts listening of cache folder.
+     *
+     * @param cacheFolder    Path to cache folder
+     * @param assembler      Assembler of found songs. Parts recorded at its manifest are not harvested again.
+     * @param debounceMillis Period without changes, after which part is considered to be written
+     * @param executorMode   Kind of threads, that probe parts
+     * @throws IOException                   If cache folder can't be watched
+     * @throws UnsupportedOperationException If executor mode is not supported by running Java
+     */
+    public CacheWatcher(Path cacheFolder, SongAssembler assembler, long debounceMillis, ExecutorMode executorMode)
+            throws IOException {
+        this(cacheFolder, assembler, debounceMillis, DEFAULT_SONG_IDLE_MILLIS, executorMode);
+    }
+
+    /**
+     * Starts listening of cache folder.
+     *
+     * @param cacheFolder    Path to cache folder
+     * @param assembler      Assembler of found songs. Parts recorded at its manifest are not harvested again.
+     * @param debounceMillis Period without changes, after which part is considered to be written
+     * @param songIdleMillis Period without changes, after which last song is considered to be finished
+     * @param executorMode   Kind of threads, that probe parts
+     * @throws IOException                   If cache folder can't be watched
+     * @throws UnsupportedOperationException If executor mode is not supported by running Java
+     */
+    public CacheWatcher(Path cacheFolder, SongAssembler assembler, long debounceMillis, long songIdleMillis,
+                        ExecutorMode executorMode) throws IOException {
+        if (debounceMillis < 1) throw new IllegalArgumentException("Debounce period must be positive");
+        if (songIdleMillis < debounceMillis) {
+            throw new IllegalArgumentException("Song idle period must not be shorter than debounce period");
+        }
+
+        this.cacheFolder = cacheFolder.toAbsolutePath();
+        this.manifest = assembler.getManifest();
+        this.assembler = assembler;
+        this.debounceMillis = debounceMillis;
+        this.songIdleMillis = songIdleMillis;
+        this.probers = executorMode.create(HarvestPipeline.DEFAULT_PROBERS);
+        this.watchService = cacheFolder.getFileSystem().newWatchService();
+        this.cacheFolder.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /**
+     * Harvests parts, that aren't recorded at manifest yet, and then every new part of cache folder.
+     * Returns only when watcher is closed or thread is interrupted.
+     *
+     * @throws IOException          If cache folder can't be read
+     * @throws InterruptedException If watching was interrupted
+     */
+    public void run() throws IOException, InterruptedException {
+        addUnrecordedParts(System.currentTimeMillis());
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                long now = System.currentTimeMillis();
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            addUnrecordedParts(now); // events were lost
+                        } else {
+                            addPart(cacheFolder.resolve((Path) event.context()), now);
+                        }
+                    }
+                    if (!key.reset()) {
+                        throw new IOException("Cache folder is no longer accessible: " + cacheFolder);
+                    }
+                }
+                harvestSettledParts(now);
+            }
+        } catch (ClosedWatchServiceException e) {
+            // watcher was closed from another thread
+        }
+    }
+
+    /**
+     * Makes all parts of cache folder, that weren't harvested yet, pending.
+     */
+    private void addUnrecordedParts(long now) throws IOException {
+        long started = System.nanoTime();
+        try (DirectoryStream<Path> directoryStream =
+                     Files.newDirectoryStream(cacheFolder, CacheReader.CACHE_FILE_NAME_PREFIX + "*")) {
+            for (Path part : directoryStream) {
+                addPart(part, now);
+            }
+        }
+        HarvestMetrics.shared().record(HarvestMetrics.Phase.LISTING, System.nanoTime() - started);
+    }
+
+    /**
+     * Makes part pending or prolongs its waiting, if part wasn't harvested yet.
+     * Part, that was already passed to grouper, is not pending again: song is grouped in cache order once.
+     */
+    private void addPart(Path part, long now) {
+        if (PartOrder.parseNumber(part.getFileName().toString()) < 0) return;
+        if (manifest.isRecorded(part) || groupedParts.contains(part)) return;
+
+        pendingParts.put(part, now);
+        lastEventMillis = now;
+    }
+
+    /**
+     * Probes parts, that weren't changed for debounce period, in cache order and assembles closed songs.
+     * Last song is assembled when there are no more pending parts and cache folder is quiet for song idle period.
+     */
+    private void harvestSettledParts(long now) {
+        List<Path> settledPaths = new ArrayList<>();
+        for (Iterator<Map.Entry<Path, Long>> it = pendingParts.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, Long> pending = it.next();
+            if (now - pending.getValue() >= debounceMillis) {
+                settledPaths.add(pending.getKey());
+                it.remove();
+            }
+        }
+
+        if (!settledPaths.isEmpty()) {
+            List<Path> settledParts = PartOrder.of(cacheFolder, settledPaths);
+            HarvestMetrics.shared().addPartsProbed(settledParts.size());
+            for (CachePart part : PartScanner.probeAll(settledParts, probers)) {
+                if (part == null) continue;
+                songOpened = true;
+                groupedParts.add(part.getPath());
+                long groupingStarted = System.nanoTime();
+                SongGroup song = grouper.add(part);
+                HarvestMetrics.shared().record(HarvestMetrics.Phase.GROUPING, System.nanoTime() - groupingStarted);
+                if (song != null) {
+                    assemble(song);
+                }
+            }
+        }
+
+        if (songOpened && pendingParts.isEmpty() && now - lastEventMillis >= songIdleMillis) {
+            songOpened = false;
+            SongGroup lastSong = grouper.finish();
+            if (lastSong != null) {
+                assemble(lastSong);
+            }
+        }
+
+        if (manifest.isChanged()) {
+            try {
+                manifest.save();
+            } catch (IOException e) {
+                System.err.println("Harvest manifest can't be saved!\n" + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Assembles song and reports its track. Parts of song are forgotten whatever the outcome:
+     * recorded parts are watched by manifest, and parts, that failed, are harvested again, if they are changed.
+     */
+    private void assemble(SongGroup song) {
+        try {
+            BuildResult result = assembler.assemble(song);
+            if (result != null && result.isDuplicate()) {
+                System.out.format("Dropped duplicate of: %s (%d parts)\n", result.getTrack().getFileName(), song.size());
+            } else if (result != null) {
+                System.out.format("Harvested: %s (%d parts, %.1f MB, %.0f s, %s)\n", result.getTrack().getFileName(),
+                        song.size(), result.getBytesWritten() / CacheReader.BYTES_IN_MEGABYTE,
+                        result.getAudio().getDurationSeconds(), result.getAudio().getStatus());
+            }
+        } catch (RuntimeException e) { // watcher must stay alive
+            e.printStackTrace();
+        }
+        for (Path part : song.getPaths()) {
+            groupedParts.remove(part);
+        }
+    }
+
+    /**
+     * Stops listening of cache folder.
+     *
+     * @throws IOException If watch service can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        probers.shutdown();
+        watchService.close();
+    }
+
+    // GETTERS
+    public SongAssembler getAssembler() {
+        return assembler;
+    }
+}
@@ -0,0 +1,86 @@
+package javacore.coop.cachemusic;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Kind of threads, that probe parts and assemble songs.<br>
+ * Lets to compare, which one saturates storage better: few platform threads suit spinning disks,
+ * while many concurrent reads may be needed to saturate NVMe.
+ */
+public enum ExecutorMode {
+    /**
+     * Fixed pool of platform threads
+     */
+    FIXED,
+    /**
+     * Work-stealing <code>ForkJoinPool</code>, parts are probed by recursive tasks
+     */
+    FORK_JOIN,
+    /**
+     * New virtual thread for every task. Requires Java 21 or newer.
+     */
+    VIRTUAL;
+
+    public final static ExecutorMode DEFAULT = FORK_JOIN;
+
+    private final static String VIRTUAL_EXECUTOR_FACTORY = "newVirtualThreadPerTaskExecutor";
+
+    /**
+     * Makes executor of this mode.
+     *
+     * @param threads Count of platform threads. Ignored by {@link #VIRTUAL} mode.
+     * @return New executor, that must be shut down by caller
+     * @throws UnsupportedOperationException If virtual threads are not supported by running Java
+     */
+    public ExecutorService create(int threads) throws UnsupportedOperationException {
+        switch (this) {
+            case FIXED:
+                return Executors.newFixedThreadPool(threads);
+            case FORK_JOIN:
+                return new ForkJoinPool(threads);
+            default:
+                try { // called through reflection, because program is built for Java 8
+                    Method factory = Executors.class.getMethod(VIRTUAL_EXECUTOR_FACTORY);
+                    return (ExecutorService) factory.invoke(null);
+                } catch (NoSuchMethodException | IllegalAccessException e) {
+                    throw new UnsupportedOperationException("Virtual threads require Java 21 or newer");
+                } catch (InvocationTargetException e) {
+                    throw new UnsupportedOperationException("Virtual threads can't be started: " + e.getCause());
+                }
+        }
+    }
+
+    /**
+     * Checks if this mode can be used at running Java.
+     *
+     * @return <code>false</code> if mode is {@link #VIRTUAL} and virtual threads are not supported
+     */
+    public boolean isSupported() {
+        if (this != VIRTUAL) return true;
+        try {
+            Executors.class.getMethod(VIRTUAL_EXECUTOR_FACTORY);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Finds mode by its name at command line, e.g. <code>fixed</code>, <code>forkjoin</code> or <code>virtual</code>.
+     *
+     * @param name Name of mode, case and dashes are ignored
+     * @return Found mode
+     * @throws IllegalArgumentException If there is no such mode
+     */
+    public static ExecutorMode fromName(String name) throws IllegalArgumentException {
+        String normalized = name.replace("-", "").replace("_", "");
+        for (ExecutorMode mode : values()) {
+            if (mode.name().replace("_", "").equalsIgnoreCase(normalized)) return mode;
+        }
+        throw new IllegalArgumentException("Unknown executor: " + name);
+    }
+}
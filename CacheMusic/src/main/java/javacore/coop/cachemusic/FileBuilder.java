@@ -0,0 +1,237 @@
+package javacore.coop.cachemusic;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FileBuilder {
+    public final static Path DEFAULT_OUTPUT_FOLDER = Paths.get(".", "Tracks");
+    final static String DEFAULT_SONG_NAME = "Unnamed";
+
+    private static final String MP3 = ".mp3";
+    private static final String TEMP_PREFIX = ".";
+    private static final String TEMP_SUFFIX = ".part";
+
+    /**
+     * Collect track parts to full track; Additional parameters;
+     *
+     * @param files track parts
+     * @return result of assembly
+     * @throws IOException
+     */
+    public static BuildResult build(List<String> files) throws IOException {
+        return build(files, DEFAULT_OUTPUT_FOLDER, DEFAULT_SONG_NAME);
+    }
+
+    /**
+     * Collect track parts to full track; Additional parameters;
+     *
+     * @param files    track parts
+     * @param fileName name of full track which we get finally
+     * @return result of assembly
+     * @throws IOException
+     */
+    public static BuildResult build(List<String> files, String fileName) throws IOException {
+        return build(files, DEFAULT_OUTPUT_FOLDER, fileName);
+    }
+
+    /**
+     * Collect track parts to full track; Additional parameters;
+     *
+     * @param files        track parts
+     * @param outputFolder folder that will contain final track
+     * @return result of assembly
+     * @throws IOException
+     */
+    public static BuildResult build(List<String> files, Path outputFolder) throws IOException {
+        return build(files, outputFolder, "Unnamed");
+    }
+
+    /**
+     * Collect track parts to full track; Additional parameters;
+     *
+     * @param files        track parts
+     * @param fileName     name of full track which we get finally
+     * @param outputFolder folder that will contain final track
+     * @return result of assembly
+     * @throws IOException
+     */
+    public static BuildResult build(List<String> files, Path outputFolder, String fileName) throws IOException {
+        List<Path> parts = new ArrayList<>(files.size());
+        for (String file : files) {
+            parts.add(Paths.get(file));
+        }
+        return assemble(parts, outputFolder, fileName);
+    }
+
+    /**
+     * Collect track parts to full track. Bytes, that repeat the end of previous part, are not written.
+     *
+     * @param parts        track parts
+     * @param outputFolder folder that will contain final track
+     * @param fileName     name of full track which we get finally
+     * @return result of assembly
+     * @throws IOException
+     */
+    public static BuildResult assemble(List<Path> parts, Path outputFolder, String fileName) throws IOException {
+        Path outSong = reserveTrack(outputFolder, fileName);
+
+        long started = System.nanoTime();
+        MpegFrameScanner audio = new MpegFrameScanner();
+        long bytesWritten = publish(parts, audio, outSong).getSize();
+        return new BuildResult(outSong, bytesWritten, System.nanoTime() - started, false, audio.finish());
+    }
+
+    /**
+     * Collect track parts to full track, if output folder has no track with the same content.<br>
+     * Parts are read once: content hash is calculated and MPEG frames are validated while track is written
+     * to hidden temporary file. Duplicate is dropped with its temporary file instead of being renamed to track.
+     * Bytes, that repeat the end of previous part, are neither hashed nor written.
+     *
+     * @param parts        track parts
+     * @param outputFolder folder that will contain final track
+     * @param fileName     name of full track which we get finally
+     * @param index        index of content hashes of output folder
+     * @return result of assembly. If song is duplicate - result points to existing track.
+     * @throws IOException
+     */
+    public static BuildResult assemble(List<Path> parts, Path outputFolder, String fileName, TrackIndex index)
+            throws IOException {
+        Path outSong = reserveTrack(outputFolder, fileName);
+        String track = outSong.getFileName().toString();
+        Path temp = temporaryTrack(outSong);
+
+        long started = System.nanoTime();
+        MpegFrameScanner audio = new MpegFrameScanner();
+        try {
+            TrackContent content = write(parts, audio, temp);
+            String hash = content.getHash(); // null if nothing was read: nothing to compare
+            String existing = hash == null ? null : index.claim(hash, track);
+            if (existing != null) {
+                OutputCatalog.of(outputFolder).release(track);
+                return new BuildResult(outputFolder.toAbsolutePath().resolve(existing), 0,
+                        System.nanoTime() - started, true, audio.finish());
+            }
+
+            try {
+                move(temp, outSong);
+            } catch (IOException e) {
+                if (hash != null) index.abandon(hash, track);
+                throw e;
+            }
+            if (hash != null) index.written(track);
+            return new BuildResult(outSong, content.getSize(), System.nanoTime() - started, false, audio.finish());
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reserves unique name of track at {@link OutputCatalog} of output folder. Track file is not created.
+     *
+     * @param outputFolder folder that will contain track
+     * @param fileName     desired name of track
+     * @return path to reserved track
+     * @throws IOException
+     */
+    private static Path reserveTrack(Path outputFolder, String fileName) throws IOException {
+        if (Files.notExists(outputFolder))
+            Files.createDirectories(outputFolder);
+
+        OutputCatalog catalog = OutputCatalog.of(outputFolder);
+        while (true) {
+            Path outSong = catalog.getFolder().resolve(catalog.reserve(fileName, MP3));
+            if (Files.notExists(outSong)) return outSong; // otherwise name was taken by another program
+        }
+    }
+
+    /**
+     * Writes track to hidden temporary file and atomically renames it to track.
+     * So track appears only when it is complete: run, that dies while writing, leaves no half-written track.
+     *
+     * @param parts   track parts
+     * @param audio   validator of written bytes or <code>null</code>
+     * @param outSong reserved track file
+     * @return written content
+     * @throws IOException
+     */
+    private static TrackContent publish(List<Path> parts, MpegFrameScanner audio, Path outSong) throws IOException {
+        Path temp = temporaryTrack(outSong);
+        try {
+            TrackContent content = write(parts, audio, temp);
+            move(temp, outSong);
+            return content;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @return hidden temporary file, that track is written to
+     */
+    private static Path temporaryTrack(Path outSong) {
+        return outSong.resolveSibling(TEMP_PREFIX + outSong.getFileName() + TEMP_SUFFIX);
+    }
+
+    /**
+     * Renames written temporary file to track atomically, if file system supports it.
+     */
+    private static void move(Path temp, Path outSong) throws IOException {
+        try {
+            Files.move(temp, outSong, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, outSong);
+        }
+    }
+
+    /**
+     * Deletes temporary files of tracks, that were left by interrupted runs.
+     *
+     * @param outputFolder folder with tracks
+     */
+    static void deleteIncompleteTracks(Path outputFolder) {
+        if (!Files.isDirectory(outputFolder)) return;
+
+        try (DirectoryStream<Path> directoryStream =
+                     Files.newDirectoryStream(outputFolder, TEMP_PREFIX + "*" + MP3 + TEMP_SUFFIX)) {
+            for (Path temp : directoryStream) {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            System.err.println("Incomplete tracks of previous run can't be deleted!\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes parts to track from the buffers, they are read to. Parts, that can't be read, are skipped.
+     *
+     * @param parts   track parts
+     * @param audio   validator of written bytes or <code>null</code>
+     * @param outSong track file
+     * @return written content
+     * @throws IOException
+     */
+    private static TrackContent write(List<Path> parts, MpegFrameScanner audio, Path outSong) throws IOException {
+        try (FileChannel out = FileChannel.open(outSong, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            return TrackContent.copy(parts, audio, null, out);
+        }
+    }
+
+    /**
+     * Calculates content hash of parts, joined in one track. Parts, that can't be read, are skipped.
+     *
+     * @param parts track parts
+     * @return hexadecimal content hash or <code>null</code> if no part was read
+     */
+    static String hash(List<Path> parts) {
+        try {
+            return TrackContent.copy(parts, null, null, null).getHash();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // nothing is written
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package javacore.coop.cachemusic;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent manifest of harvested cache parts.<br>
+ * Stored at output folder and keyed by part's path, size and time of last modification.
+ * Parts are written by sections: header of section names cache folder and its lines name parts of that folder.
+ * So several cache folders may be harvested to one output folder, and adding or removing a cache folder
+ * doesn't change keys of parts of other folders. Parts of folders, that aren't harvested this time, are kept.
+ * For every part it keeps probed descriptor and the track part was assembled into,
+ * so next harvest probes and assembles only new or changed parts.<br>
+ * Manifest is rewritten at the end of harvest. Until then every assembled song is appended to journal,
+ * so harvest, that died halfway, is resumed by next run from the last assembled song.<br>
+ * Parts may be recorded concurrently by several assemblers.
+ */
+public class HarvestManifest {
+    public final static String FILE_NAME = ".harvest-manifest";
+    public final static String JOURNAL_FILE_NAME = ".harvest-journal";
+
+    private final static String CACHE_FOLDER_PREFIX = "# cache: ";
+    private final static String SEPARATOR = "\t";
+    private final static int FIELDS_COUNT = 7;
+    private final static int JOURNAL_TAIL_BYTES = 4096;
+
+    private final Path file;
+    private final Path journal;
+    private final Set<Path> cacheFolders = new HashSet<>(); // harvested at this run
+    private final Map<String, Entry> previous = new HashMap<>(); // absolute path of part - entry
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+    private boolean journalStarted = false;
+    // Journal of interrupted harvest was checked for line cut at its end
+    private boolean journalChecked = false;
+    private volatile boolean changed = false; // parts were recorded since manifest was saved
+
+    private HarvestManifest(Path file, List<Path> cacheFolders) {
+        this.file = file;
+        this.journal = file.resolveSibling(JOURNAL_FILE_NAME);
+        for (Path cacheFolder : cacheFolders) {
+            this.cacheFolders.add(cacheFolder.toAbsolutePath().normalize());
+        }
+    }
+
+    /**
+     * Makes manifest, that doesn't know any part.
+     *
+     * @param outputFolder Folder with harvested tracks
+     * @param cacheFolder  Harvested cache folder
+     * @return Empty manifest
+     */
+    public static HarvestManifest empty(Path outputFolder, Path cacheFolder) {
+        return empty(outputFolder, Collections.singletonList(cacheFolder));
+    }
+
+    /**
+     * Makes manifest of several cache folders, that doesn't know any part.
+     *
+     * @param outputFolder Folder with harvested tracks
+     * @param cacheFolders Harvested cache folders
+     * @return Empty manifest
+     */
+    public static HarvestManifest empty(Path outputFolder, List<Path> cacheFolders) {
+        return new HarvestManifest(outputFolder.resolve(FILE_NAME), cacheFolders);
+    }
+
+    /**
+     * Loads manifest from output folder and replays journal of interrupted harvest over it.<br>
+     * If manifest not exists or can't be read - returns empty manifest.
+     *
+     * @param outputFolder Folder with harvested tracks
+     * @param cacheFolder  Harvested cache folder
+     * @return Loaded manifest
+     */
+    public static HarvestManifest load(Path outputFolder, Path cacheFolder) {
+        return load(outputFolder, Collections.singletonList(cacheFolder));
+    }
+
+    /**
+     * Loads manifest of several cache folders from output folder and replays journal of interrupted harvest over it.
+     * <br>
+     * If manifest not exists or can't be read - returns empty manifest.
+     *
+     * @param outputFolder Folder with harvested tracks
+     * @param cacheFolders Harvested cache folders
+     * @return Loaded manifest
+     */
+    public static HarvestManifest load(Path outputFolder, List<Path> cacheFolders) {
+        HarvestManifest manifest = empty(outputFolder, cacheFolders);
+        if (Files.exists(manifest.file)) {
+            try {
+                if (!manifest.read(manifest.file)) {
+                    throw new IllegalArgumentException("Unknown format of " + manifest.file);
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Harvest manifest can't be read, whole cache will be processed.\n"
+                        + e.getMessage());
+                manifest.previous.clear();
+            }
+        }
+        if (Files.exists(manifest.journal)) {
+            try {
+                manifest.journalStarted = manifest.read(manifest.journal);
+            } catch (IOException e) {
+                System.err.println("Journal of interrupted harvest can't be read!\n" + e.getMessage());
+            }
+        }
+
+        return manifest;
+    }
+
+    /**
+     * Reads entries of manifest or journal. Later entries replace earlier ones, damaged lines are skipped.
+     * Name of part is resolved against cache folder of its section.
+     *
+     * @return <code>false</code> if file doesn't start with section
+     */
+    private boolean read(Path source) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (line == null || !line.startsWith(CACHE_FOLDER_PREFIX)) return false;
+
+            Path cacheFolder = Paths.get(line.substring(CACHE_FOLDER_PREFIX.length()));
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(CACHE_FOLDER_PREFIX)) {
+                    cacheFolder = Paths.get(line.substring(CACHE_FOLDER_PREFIX.length()));
+                    continue;
+                }
+                String[] fields = line.split(SEPARATOR, -1);
+                if (fields.length != FIELDS_COUNT) continue; // e.g. last line of journal was cut
+
+                try {
+                    previous.put(key(cacheFolder.resolve(fields[0])), new Entry(
+                            Long.parseLong(fields[1]),
+                            Long.parseLong(fields[2]),
+                            Metadata.FormatName.valueOf(fields[3]),
+                            Metadata.FormatName.valueOf(fields[4]),
+                            fields[5].isEmpty() ? null : fields[5],
+                            fields[6].isEmpty() ? null : fields[6]));
+                } catch (IllegalArgumentException e) {
+                    if (source == file) throw e;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Restores descriptor of part, that wasn't changed since previous harvest.
+     *
+     * @param part       Path to part file
+     * @param attributes Current attributes of part file
+     * @return Descriptor of part or <code>null</code> if part is new or changed
+     */
+    public CachePart restore(Path part, BasicFileAttributes attributes) {
+        String name = key(part);
+        Entry entry = previous.get(name);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        if (entry == null || entry.size != attributes.size() || entry.lastModified != lastModified) {
+            return null;
+        }
+
+        current.put(name, entry);
+        return new CachePart(part, entry.size, entry.lastModified, entry.formatAtStart, entry.formatAtEnd,
+                entry.songName);
+    }
+
+    /**
+     * Searches for track, that unchanged part was assembled into at previous harvest.
+     *
+     * @param part Descriptor of part
+     * @return File name of track or <code>null</code> if part wasn't assembled yet
+     */
+    public String getTrack(CachePart part) {
+        Entry entry = current.get(key(part.getPath()));
+        return entry == null || entry.lastModified != part.getLastModified() ? null : entry.track;
+    }
+
+    /**
+     * Checks, that part was seen at this harvest.
+     *
+     * @param part Path to part file
+     * @return <code>true</code> if part was restored or recorded
+     */
+    public boolean isRecorded(Path part) {
+        return current.containsKey(key(part));
+    }
+
+    /**
+     * Remembers part and track it was assembled into.
+     *
+     * @param part  Descriptor of part
+     * @param track File name of track or <code>null</code> if part wasn't assembled
+     */
+    public void record(CachePart part, String track) {
+        current.put(key(part.getPath()), entry(part, track));
+        changed = true;
+    }
+
+    /**
+     * Remembers all parts of processed song and appends them to journal,
+     * so next run skips song even if this harvest dies before manifest is saved.
+     *
+     * @param song  Parts of song
+     * @param track File name of track or <code>null</code> if song wasn't assembled
+     */
+    public void record(SongGroup song, String track) {
+        StringBuilder lines = new StringBuilder();
+        Path section = null;
+        for (CachePart part : song.getParts()) {
+            Path path = part.getPath().toAbsolutePath().normalize();
+            Entry entry = entry(part, track);
+            current.put(path.toString(), entry);
+            if (!path.getParent().equals(section)) {
+                section = path.getParent();
+                lines.append(CACHE_FOLDER_PREFIX).append(section).append(System.lineSeparator());
+            }
+            lines.append(line(path.getFileName().toString(), entry)).append(System.lineSeparator());
+        }
+        appendJournal(lines.toString());
+        changed = true;
+    }
+
+    /**
+     * Appends lines to journal. Damaged journal is replaced by the first lines.
+     * Line, that was cut at end of journal of interrupted harvest, is removed before the first lines,
+     * otherwise the first appended line would be glued to it and lost.
+     */
+    private synchronized void appendJournal(String lines) {
+        try {
+            if (!journalStarted) {
+                Files.createDirectories(journal.getParent());
+                Files.write(journal, new byte[0]);
+                journalStarted = true;
+            } else if (!journalChecked) {
+                truncateCutLine();
+            }
+            journalChecked = true;
+            Files.write(journal, lines.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Journal of harvest can't be written!\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Truncates journal after its last line break.
+     */
+    private void truncateCutLine() throws IOException {
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(JOURNAL_TAIL_BYTES);
+            long end = channel.size();
+            while (end > 0) {
+                long start = Math.max(0, end - buffer.capacity());
+                buffer.clear().limit((int) (end - start));
+                Metadata.readFully(channel, start, buffer);
+                for (int i = buffer.position() - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        channel.truncate(start + i + 1);
+                        return;
+                    }
+                }
+                end = start;
+            }
+            channel.truncate(0); // section is appended with every song, journal may start from scratch
+        }
+    }
+
+    /**
+     * Makes key of part: its absolute path.
+     */
+    private static String key(Path part) {
+        return part.toAbsolutePath().normalize().toString();
+    }
+
+    private static Entry entry(CachePart part, String track) {
+        return new Entry(part.getSize(), part.getLastModified(), part.getFormatAtStart(), part.getFormatAtEnd(),
+                part.getSongName(), track);
+    }
+
+    private static String line(String name, Entry entry) {
+        return name + SEPARATOR + entry.size + SEPARATOR + entry.lastModified + SEPARATOR
+                + entry.formatAtStart + SEPARATOR + entry.formatAtEnd + SEPARATOR
+                + escape(entry.songName) + SEPARATOR + escape(entry.track);
+    }
+
+    /**
+     * Writes manifest to output folder and clears journal. Parts of harvested cache folders are written,
+     * if they were seen at this harvest. Parts of other cache folders are kept as they were.
+     *
+     * @throws IOException If manifest can't be written
+     */
+    public synchronized void save() throws IOException {
+        Map<Path, Map<String, Entry>> sections = new TreeMap<>();
+        for (Map.Entry<String, Entry> part : previous.entrySet()) {
+            Path path = Paths.get(part.getKey());
+            if (!cacheFolders.contains(path.getParent())) {
+                sections.computeIfAbsent(path.getParent(), folder -> new TreeMap<>())
+                        .put(path.getFileName().toString(), part.getValue());
+            }
+        }
+        for (Map.Entry<String, Entry> part : current.entrySet()) {
+            Path path = Paths.get(part.getKey());
+            sections.computeIfAbsent(path.getParent(), folder -> new TreeMap<>())
+                    .put(path.getFileName().toString(), part.getValue());
+        }
+
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(FILE_NAME + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<Path, Map<String, Entry>> section : sections.entrySet()) {
+                writer.write(CACHE_FOLDER_PREFIX + section.getKey());
+                writer.newLine();
+                for (Map.Entry<String, Entry> part : section.getValue().entrySet()) {
+                    writer.write(line(part.getKey(), part.getValue()));
+                    writer.newLine();
+                }
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(journal); // everything journaled is at manifest now
+        journalStarted = false;
+        changed = false;
+    }
+
+    /**
+     * @return <code>true</code> if parts were recorded since manifest was loaded or saved
+     */
+    public boolean isChanged() {
+        return changed;
+    }
+
+    /**
+     * Makes value safe for line-based format.
+     */
+    private static String escape(String value) {
+        return value == null ? "" : value.replaceAll("[\t\r\n]", " ");
+    }
+
+    /**
+     * Remembered state of one part.
+     */
+    private static class Entry {
+        private final long size;
+        private final long lastModified;
+        private final Metadata.FormatName formatAtStart;
+        private final Metadata.FormatName formatAtEnd;
+        private final String songName;
+        private final String track;
+
+        Entry(long size, long lastModified, Metadata.FormatName formatAtStart, Metadata.FormatName formatAtEnd,
+              String songName, String track) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.formatAtStart = formatAtStart;
+            this.formatAtEnd = formatAtEnd;
+            this.songName = songName;
+            this.track = track;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package javacore.coop.cachemusic;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Timers and counters of hot paths of harvest, shared by whole program.<br>
+ * Every phase has count of operations, total and max time and histogram of latencies
+ * with power of two buckets in microseconds. Metrics are updated without locks, so they can be
+ * recorded by scanning and assembling threads at the same time.
+ */
+public class HarvestMetrics implements HarvestMetricsMBean {
+    public final static String OBJECT_NAME = "javacore.coop.cachemusic:type=HarvestMetrics";
+    public final static String FILE_NAME = "harvest-metrics.json";
+
+    private final static HarvestMetrics SHARED = new HarvestMetrics();
+    private final static int HISTOGRAM_BUCKETS = 32; // the last bucket collects latencies over 2^30 us
+    private final static long NANOS_IN_MICROSECOND = 1000;
+    private final static long NANOS_IN_MILLISECOND = 1_000_000;
+
+    /**
+     * Measured phase of harvest
+     */
+    public enum Phase {
+        /**
+         * Listing of cache folder
+         */
+        LISTING,
+        /**
+         * Reading of head and tail of part and detection of metadata format
+         */
+        DETECTION,
+        /**
+         * Parsing of found tag
+         */
+        TAG_PARSE,
+        /**
+         * Grouping of probed parts to songs
+         */
+        GROUPING,
+        /**
+         * Hashing, validation and writing of song
+         */
+        ASSEMBLY
+    }
+
+    /**
+     * Timer of one phase.
+     */
+    private static class Timer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+        private void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            long micros = nanos / NANOS_IN_MICROSECOND;
+            int bucket = micros == 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros); // bucket i holds < 2^i us
+            histogram.incrementAndGet(Math.min(bucket, HISTOGRAM_BUCKETS - 1));
+        }
+
+        private void reset() {
+            count.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+            for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+                histogram.set(i, 0);
+            }
+        }
+    }
+
+    private final Timer[] timers = new Timer[Phase.values().length];
+
+    // COUNTERS
+    private final LongAdder partsListed = new LongAdder();
+    private final LongAdder partsProbed = new LongAdder();
+    private final LongAdder partsRestored = new LongAdder();
+    private final LongAdder songsAssembled = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    private HarvestMetrics() {
+        for (int i = 0; i < timers.length; i++) {
+            timers[i] = new Timer();
+        }
+    }
+
+    /**
+     * @return Metrics shared by whole program
+     */
+    public static HarvestMetrics shared() {
+        return SHARED;
+    }
+
+    /**
+     * Registers metrics at platform MBean server, if they aren't registered yet.
+     */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            System.err.println("Harvest metrics can't be published through JMX!\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Records time of one operation of phase.
+     *
+     * @param phase Measured phase
+     * @param nanos Time of operation in nanoseconds
+     */
+    public void record(Phase phase, long nanos) {
+        timers[phase.ordinal()].record(nanos);
+    }
+
+    public void addPartsListed(long parts) {
+        partsListed.add(parts);
+    }
+
+    public void addPartsProbed(long parts) {
+        partsProbed.add(parts);
+    }
+
+    public void addPartsRestored(long parts) {
+        partsRestored.add(parts);
+    }
+
+    public void addSongsAssembled(long songs) {
+        songsAssembled.add(songs);
+    }
+
+    public void addBytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    public void addBytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    /**
+     * Writes metrics as JSON.
+     *
+     * @param file Destination file
+     * @throws IOException If file can't be written
+     */
+    public void dump(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.write(file, getJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Makes one line summary of phases, e.g. <code>listing 12 ms, detection 340 ms</code>.
+     *
+     * @return Total time of every phase
+     */
+    public String summary() {
+        StringBuilder summary = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            if (summary.length() > 0) summary.append(", ");
+            summary.append(phase.name().toLowerCase(Locale.ROOT).replace('_', ' '))
+                    .append(' ').append(getMillis(phase)).append(" ms");
+        }
+        return summary.toString();
+    }
+
+    @Override
+    public String getJson() {
+        StringBuilder json = new StringBuilder("{\n  \"phases\": {");
+        for (Phase phase : Phase.values()) {
+            Timer timer = timers[phase.ordinal()];
+            long count = timer.count.sum();
+            long total = timer.totalNanos.sum();
+            json.append(phase.ordinal() == 0 ? "\n" : ",\n")
+                    .append("    \"").append(phase.name().toLowerCase(Locale.ROOT)).append("\": {")
+                    .append("\"count\": ").append(count)
+                    .append(", \"total_ms\": ").append(total / NANOS_IN_MILLISECOND)
+                    .append(", \"mean_us\": ").append(count == 0 ? 0 : total / count / NANOS_IN_MICROSECOND)
+                    .append(", \"max_us\": ").append(timer.maxNanos.get() / NANOS_IN_MICROSECOND)
+                    .append(", \"histogram_us\": {");
+            boolean first = true;
+            for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+                long bucketCount = timer.histogram.get(i);
+                if (bucketCount == 0) continue;
+                String bound = i == HISTOGRAM_BUCKETS - 1 ? "inf" : String.valueOf(1L << i);
+                json.append(first ? "" : ", ").append("\"<").append(bound).append("\": ").append(bucketCount);
+                first = false;
+            }
+            json.append("}}");
+        }
+        json.append("\n  },\n  \"counters\": {")
+                .append("\n    \"parts_listed\": ").append(partsListed.sum())
+                .append(",\n    \"parts_probed\": ").append(partsProbed.sum())
+                .append(",\n    \"parts_restored\": ").append(partsRestored.sum())
+                .append(",\n    \"songs_assembled\": ").append(songsAssembled.sum())
+                .append(",\n    \"bytes_read\": ").append(bytesRead.sum())
+                .append(",\n    \"bytes_written\": ").append(bytesWritten.sum())
+                .append("\n  }\n}\n");
+        return json.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (Timer timer : timers) {
+            timer.reset();
+        }
+        partsListed.reset();
+        partsProbed.reset();
+        partsRestored.reset();
+        songsAssembled.reset();
+        bytesRead.reset();
+        bytesWritten.reset();
+    }
+
+    // GETTERS
+    public long getMillis(Phase phase) {
+        return timers[phase.ordinal()].totalNanos.sum() / NANOS_IN_MILLISECOND;
+    }
+
+    public long getCount(Phase phase) {
+        return timers[phase.ordinal()].count.sum();
+    }
+
+    @Override
+    public long getPartsListed() {
+        return partsListed.sum();
+    }
+
+    @Override
+    public long getPartsProbed() {
+        return partsProbed.sum();
+    }
+
+    @Override
+    public long getPartsRestored() {
+        return partsRestored.sum();
+    }
+
+    @Override
+    public long getSongsAssembled() {
+        return songsAssembled.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getListingMillis() {
+        return getMillis(Phase.LISTING);
+    }
+
+    @Override
+    public long getDetectionMillis() {
+        return getMillis(Phase.DETECTION);
+    }
+
+    @Override
+    public long getTagParseMillis() {
+        return getMillis(Phase.TAG_PARSE);
+    }
+
+    @Override
+    public long getGroupingMillis() {
+        return getMillis(Phase.GROUPING);
+    }
+
+    @Override
+    public long getAssemblyMillis() {
+        return getMillis(Phase.ASSEMBLY);
+    }
+}
@@ -0,0 +1,38 @@
+package javacore.coop.cachemusic;
+
+/**
+ * Management interface of {@link HarvestMetrics}, available through JMX (e.g. at JConsole).
+ */
+public interface HarvestMetricsMBean {
+    long getPartsListed();
+
+    long getPartsProbed();
+
+    long getPartsRestored();
+
+    long getSongsAssembled();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    long getListingMillis();
+
+    long getDetectionMillis();
+
+    long getTagParseMillis();
+
+    long getGroupingMillis();
+
+    long getAssemblyMillis();
+
+    /**
+     * @return All metrics as JSON
+     */
+    String getJson();
+
+    /**
+     * Forgets all collected metrics.
+     */
+    void reset();
+}
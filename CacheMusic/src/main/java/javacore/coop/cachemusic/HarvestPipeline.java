@@ -0,0 +1,223 @@
+package javacore.coop.cachemusic;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Harvest of cache folder as producer/consumer pipeline.<br>
+ * Scanner puts every found song into bounded queue, while pool of assemblers builds songs from the queue.
+ * Scanning is bound by metadata reading and assembling is bound by writing, so both stages work at the same time.
+ * Both stages run at threads of selected {@link ExecutorMode}.<br>
+ * Several cache folders (e.g. caches of browser profiles) are scanned concurrently and feed the same queue,
+ * so their songs are assembled by one assembler, that drops duplicates across all caches.
+ */
+public class HarvestPipeline {
+    public final static int DEFAULT_ASSEMBLERS = 2;
+    public final static int DEFAULT_PROBERS = Runtime.getRuntime().availableProcessors();
+
+    private final static int QUEUE_CAPACITY_PER_ASSEMBLER = 4;
+    private final static SongGroup END_OF_SCAN = new SongGroup(Collections.<CachePart>emptyList());
+
+    private final List<Path> cacheFolders;
+    private final HarvestManifest manifest;
+    private final SongAssembler assembler;
+    private final int assemblers;
+    private final ExecutorMode executorMode;
+    private final BlockingQueue<SongGroup> queue;
+
+    // STATISTICS
+    private final AtomicInteger partsListed = new AtomicInteger();
+    private final AtomicInteger partsProbed = new AtomicInteger();
+    private final AtomicInteger songsFound = new AtomicInteger();
+    private final AtomicInteger songsProcessed = new AtomicInteger();
+
+    /**
+     * @param cacheFolder  Path to cache folder
+     * @param outputFolder Folder that will contain found songs
+     * @param manifest     Manifest of previous harvest
+     * @param assemblers   Count of threads, that assemble songs
+     */
+    public HarvestPipeline(Path cacheFolder, Path outputFolder, HarvestManifest manifest, int assemblers) {
+        this(cacheFolder, new SongAssembler(outputFolder, manifest), assemblers);
+    }
+
+    /**
+     * @param cacheFolder Path to cache folder
+     * @param assembler   Assembler of found songs
+     * @param assemblers  Count of threads, that assemble songs
+     */
+    public HarvestPipeline(Path cacheFolder, SongAssembler assembler, int assemblers) {
+        this(cacheFolder, assembler, assemblers, ExecutorMode.DEFAULT);
+    }
+
+    /**
+     * @param cacheFolder  Path to cache folder
+     * @param assembler    Assembler of found songs
+     * @param assemblers   Count of tasks, that assemble songs
+     * @param executorMode Kind of threads, that probe parts and assemble songs
+     */
+    public HarvestPipeline(Path cacheFolder, SongAssembler assembler, int assemblers, ExecutorMode executorMode) {
+        this(Collections.singletonList(cacheFolder), assembler, assemblers, executorMode);
+    }
+
+    /**
+     * @param cacheFolders Paths to cache folders. Manifest of assembler must be made for all of them.
+     * @param assembler    Assembler of found songs
+     * @param assemblers   Count of tasks, that assemble songs
+     * @param executorMode Kind of threads, that scan caches, probe parts and assemble songs
+     */
+    public HarvestPipeline(List<Path> cacheFolders, SongAssembler assembler, int assemblers,
+                           ExecutorMode executorMode) {
+        if (assemblers < 1) throw new IllegalArgumentException("At least one assembler is required");
+        if (cacheFolders.isEmpty()) throw new IllegalArgumentException("At least one cache folder is required");
+
+        this.cacheFolders = new ArrayList<>(cacheFolders);
+        this.manifest = assembler.getManifest();
+        this.assembler = assembler;
+        this.assemblers = assemblers;
+        this.executorMode = executorMode;
+        this.queue = new ArrayBlockingQueue<>(assemblers * QUEUE_CAPACITY_PER_ASSEMBLER);
+    }
+
+    /**
+     * Scans cache folders and assembles found songs. Returns when all songs are assembled.
+     *
+     * @throws IOException                   If cache folder can't be read
+     * @throws InterruptedException          If harvest was interrupted
+     * @throws UnsupportedOperationException If executor mode is not supported by running Java
+     */
+    public void run() throws IOException, InterruptedException {
+        ExecutorService workers = executorMode.create(assemblers);
+        ExecutorService probers = executorMode.create(DEFAULT_PROBERS);
+        ExecutorService scanners = executorMode.create(cacheFolders.size());
+        for (int i = 0; i < assemblers; i++) {
+            workers.execute(this::assemble);
+        }
+
+        try {
+            List<Future<Void>> scans = new ArrayList<>(cacheFolders.size());
+            for (Path cacheFolder : cacheFolders) {
+                scans.add(scanners.submit(() -> {
+                    scan(cacheFolder, probers);
+                    return null;
+                }));
+            }
+            try {
+                for (Future<Void> scan : scans) {
+                    scan.get();
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                if (e.getCause() instanceof InterruptedException) throw (InterruptedException) e.getCause();
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                throw new IllegalStateException(e.getCause());
+            }
+        } finally {
+            scanners.shutdownNow(); // stops scans of other caches, if one of them failed
+            scanners.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            probers.shutdown();
+            for (int i = 0; i < assemblers; i++) {
+                queue.put(END_OF_SCAN);
+            }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Scanner's task: passes songs of one cache folder to queue.
+     */
+    private void scan(Path cacheFolder, ExecutorService probers) throws IOException, InterruptedException {
+        CacheReader.scan(cacheFolder, manifest, new ScanListener() {
+            @Override
+            public void onListed(int parts) {
+                partsListed.addAndGet(parts);
+                printProgress();
+            }
+
+            @Override
+            public void onProbed(int parts) {
+                partsProbed.addAndGet(parts);
+                printProgress();
+            }
+
+            @Override
+            public void onSong(SongGroup song) throws InterruptedException {
+                songsFound.incrementAndGet();
+                queue.put(song);
+            }
+        }, probers);
+    }
+
+    /**
+     * Assembler's loop: takes songs from queue until scanning ends.
+     */
+    private void assemble() {
+        try {
+            SongGroup song;
+            while ((song = queue.take()) != END_OF_SCAN) {
+                try {
+                    assembler.assemble(song);
+                } catch (RuntimeException e) { // assembler must stay alive, otherwise scanner may wait forever
+                    e.printStackTrace();
+                }
+                songsProcessed.incrementAndGet();
+                printProgress();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Prints progress of both stages at the same line.
+     */
+    private synchronized void printProgress() {
+        int listed = partsListed.get();
+        System.out.format("\rProgress: %d%% scanned (%d/%d parts), assembled %d/%d songs",
+                listed == 0 ? 100 : partsProbed.get() * 100 / listed,
+                partsProbed.get(),
+                listed,
+                songsProcessed.get(),
+                songsFound.get());
+    }
+
+    // GETTERS
+    public SongAssembler getAssembler() {
+        return assembler;
+    }
+
+    public long getFilesAnalysed() {
+        return assembler.getFilesAnalysed();
+    }
+
+    public int getSongsFound() {
+        return songsFound.get();
+    }
+
+    public int getSongsSkipped() {
+        return assembler.getSongsSkipped();
+    }
+
+    public int getSongsDuplicated() {
+        return assembler.getSongsDuplicated();
+    }
+
+    public int getSongsFiltered() {
+        return assembler.getSongsFiltered();
+    }
+
+    public long getBytesWritten() {
+        return assembler.getBytesWritten();
+    }
+}
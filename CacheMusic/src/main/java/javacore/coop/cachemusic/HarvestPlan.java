@@ -0,0 +1,325 @@
+package javacore.coop.cachemusic;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Dry run of harvest: what would be assembled and how long it would take.<br>
+ * Songs are grouped only from header and tail probes of parts, parts are not copied and nothing is written.
+ * By default duplicates are only estimated by size: song is a duplicate, if track of the same size is at output
+ * folder or was planned before. Size of song is size of its parts before overlaps are trimmed, so such estimate
+ * misses duplicates of songs, which parts overlap. If content hashing is asked for, every planned song is read
+ * and hashed, as harvest itself would do, and compared with {@link TrackIndex} or, if there is no index,
+ * with hashes of tracks of output folder.<br>
+ * Songs, that aren't accepted by {@link TrackFilter}, are not planned.
+ * Planned songs are not kept: they are passed to listener as they are found, only a sample of them is kept
+ * to estimate copying time from its read speed.
+ */
+public class HarvestPlan {
+    private final static long SAMPLE_BYTES = 16 * 1024 * 1024;
+    private final static String TRACK_EXTENSION = ".mp3";
+
+    private final List<SongGroup> sample = new ArrayList<>();
+    private long sampleBytes = 0;
+    private int partsAnalysed = 0;
+    private int songsFound = 0;
+    private int songsPlanned = 0;
+    private int songsSkipped = 0;
+    private int songsDuplicated = 0;
+    private int songsFiltered = 0;
+    private boolean duplicatesHashed = false;
+    private long bytesToCopy = 0;
+    private long scanNanos = 0;
+    private double bytesPerSecond = 0;
+
+    private HarvestPlan() {
+    }
+
+    /**
+     * Scans cache folder and plans harvest to output folder. Neither cache nor output folder is changed.
+     *
+     * @param cacheFolder  Path to cache folder
+     * @param outputFolder Folder with harvested tracks
+     * @param manifest     Manifest of previous harvest or <code>null</code> to plan whole cache
+     * @return Planned harvest
+     * @throws IOException If cache folder can't be read
+     */
+    public static HarvestPlan make(Path cacheFolder, Path outputFolder, HarvestManifest manifest)
+            throws IOException {
+        return make(cacheFolder, outputFolder, manifest, TrackFilter.ALL);
+    }
+
+    /**
+     * Scans cache folder and plans harvest of songs, that are accepted by filter.
+     * Neither cache nor output folder is changed.
+     *
+     * @param cacheFolder  Path to cache folder
+     * @param outputFolder Folder with harvested tracks
+     * @param manifest     Manifest of previous harvest or <code>null</code> to plan whole cache
+     * @param filter       Filter of songs by metadata
+     * @return Planned harvest
+     * @throws IOException If cache folder can't be read
+     */
+    public static HarvestPlan make(Path cacheFolder, Path outputFolder, HarvestManifest manifest,
+                                   TrackFilter filter) throws IOException {
+        return make(Collections.singletonList(cacheFolder), outputFolder, manifest, filter, false, song -> {
+        });
+    }
+
+    /**
+     * Scans cache folders one by one and plans harvest of songs, that are accepted by filter.
+     * Duplicates are expected across all caches. Neither caches nor output folder are changed.
+     *
+     * @param cacheFolders Paths to cache folders
+     * @param outputFolder Folder with harvested tracks
+     * @param manifest     Manifest of previous harvest of these caches or <code>null</code> to plan whole caches
+     * @param filter       Filter of songs by metadata
+     * @param hashContent  <code>true</code> to find duplicates by content hash, reading every planned song,
+     *                     <code>false</code> to estimate them by size
+     * @param planned      Listener of songs, that would be assembled, in cache order
+     * @return Planned harvest
+     * @throws IOException If cache folder can't be read
+     */
+    public static HarvestPlan make(List<Path> cacheFolders, Path outputFolder, HarvestManifest manifest,
+                                   TrackFilter filter, boolean hashContent, Consumer<SongGroup> planned)
+            throws IOException {
+        HarvestPlan plan = new HarvestPlan();
+        Duplicates duplicates = hashContent ? Duplicates.byContent(outputFolder) : Duplicates.bySize(outputFolder);
+        plan.duplicatesHashed = hashContent;
+
+        long started = System.nanoTime();
+        for (Path cacheFolder : cacheFolders) {
+            try (Stream<SongGroup> songs = CacheReader.stream(cacheFolder, manifest)) {
+                songs.forEach(song -> {
+                    plan.songsFound++;
+                    plan.partsAnalysed += song.size();
+                    if (manifest != null && SongAssembler.harvestedTrack(manifest, song) != null) {
+                        plan.songsSkipped++;
+                        return;
+                    }
+                    if (!filter.accepts(song)) {
+                        plan.songsFiltered++;
+                        return;
+                    }
+                    long size = duplicates.plan(song);
+                    if (size < 0) {
+                        plan.songsDuplicated++;
+                        return;
+                    }
+                    plan.songsPlanned++;
+                    plan.bytesToCopy += size;
+                    if (plan.sampleBytes < SAMPLE_BYTES) {
+                        plan.sample.add(song);
+                        plan.sampleBytes += song.getBytes();
+                    }
+                    planned.accept(song);
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        plan.scanNanos = System.nanoTime() - started;
+        plan.bytesPerSecond = measureReadSpeed(plan.sample);
+        plan.sample.clear();
+        return plan;
+    }
+
+    /**
+     * Search of duplicates among existing tracks and planned songs: by size of song or by hash of its content.
+     */
+    private static class Duplicates {
+        private final Set<Long> sizes;
+        private final TrackIndex index;
+        // Hashes of planned songs and, if there is no index, of existing tracks
+        private final Set<String> hashes;
+
+        private Duplicates(Set<Long> sizes, TrackIndex index, Set<String> hashes) {
+            this.sizes = sizes;
+            this.index = index;
+            this.hashes = hashes;
+        }
+
+        private static Duplicates bySize(Path outputFolder) {
+            return new Duplicates(existingTrackSizes(outputFolder), null, null);
+        }
+
+        /**
+         * Index is used only if it exists: missing index would be made and written to output folder.
+         */
+        private static Duplicates byContent(Path outputFolder) {
+            if (Files.exists(outputFolder.resolve(TrackIndex.FILE_NAME))) {
+                return new Duplicates(null, TrackIndex.load(outputFolder), new HashSet<>());
+            }
+            return new Duplicates(null, null, existingTrackHashes(outputFolder));
+        }
+
+        /**
+         * Checks, if song is a duplicate. Song, that isn't, is remembered as planned.
+         *
+         * @return Bytes, that would be written for song, or <code>-1</code> if song is a duplicate
+         */
+        private long plan(SongGroup song) {
+            if (hashes == null) return sizes.add(song.getBytes()) ? song.getBytes() : -1;
+
+            TrackContent content;
+            try {
+                content = TrackContent.copy(song.getPaths(), null, null, null);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // nothing is written
+            }
+            String hash = content.getHash();
+            if (hash == null) return 0; // no part can be read: harvest will report such song
+            if ((index != null && index.getTrack(hash) != null) || !hashes.add(hash)) return -1;
+            return content.getSize();
+        }
+    }
+
+    /**
+     * Lists sizes of tracks at output folder.
+     */
+    private static Set<Long> existingTrackSizes(Path outputFolder) {
+        Set<Long> sizes = new HashSet<>();
+        if (!Files.isDirectory(outputFolder)) return sizes;
+
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(outputFolder, "*" + TRACK_EXTENSION)) {
+            for (Path track : directoryStream) {
+                sizes.add(Files.size(track));
+            }
+        } catch (IOException e) {
+            System.err.println("Output folder can't be listed, duplicates may be missed by plan.\n" + e.getMessage());
+        }
+        return sizes;
+    }
+
+    /**
+     * Hashes tracks of output folder.
+     */
+    private static Set<String> existingTrackHashes(Path outputFolder) {
+        Set<String> hashes = new HashSet<>();
+        if (!Files.isDirectory(outputFolder)) return hashes;
+
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(outputFolder, "*" + TRACK_EXTENSION)) {
+            for (Path track : directoryStream) {
+                String hash = FileBuilder.hash(Collections.singletonList(track));
+                if (hash != null) hashes.add(hash);
+            }
+        } catch (IOException e) {
+            System.err.println("Output folder can't be listed, duplicates may be missed by plan.\n" + e.getMessage());
+        }
+        return hashes;
+    }
+
+    /**
+     * Reads parts of sample of planned tracks, until sample size is reached, and measures read speed.
+     *
+     * @return Speed in bytes per second or <code>0</code> if nothing was read
+     */
+    private static double measureReadSpeed(List<SongGroup> tracks) {
+        BufferPool pool = BufferPool.shared();
+        ByteBuffer buffer = pool.borrow();
+        long bytesRead = 0;
+        long started = System.nanoTime();
+        try {
+            sampling:
+            for (SongGroup track : tracks) {
+                for (Path part : track.getPaths()) {
+                    if (bytesRead >= SAMPLE_BYTES) break sampling;
+
+                    try (FileChannel channel = FileChannel.open(part, StandardOpenOption.READ)) {
+                        buffer.clear();
+                        int read;
+                        while ((read = channel.read(buffer)) > 0) {
+                            bytesRead += read;
+                            if (!buffer.hasRemaining()) buffer.clear();
+                        }
+                    } catch (IOException e) {
+                        // part, that can't be read, is skipped by harvest too
+                    }
+                }
+            }
+            return BuildResult.bytesPerSecond(bytesRead, System.nanoTime() - started);
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    /**
+     * Estimates duration of harvest: the same scan and copying of planned bytes.
+     * Every byte is read from cache and written to output folder, writing is estimated at read speed.
+     *
+     * @return Estimated duration in nanoseconds or <code>-1</code> if read speed wasn't measured
+     */
+    public long getEstimatedNanos() {
+        if (bytesToCopy == 0) return scanNanos;
+        if (bytesPerSecond <= 0) return -1;
+        return scanNanos + (long) (2 * bytesToCopy / bytesPerSecond * 1_000_000_000d);
+    }
+
+    // GETTERS
+
+    /**
+     * @return Count of songs, that would be assembled
+     */
+    public int getSongsPlanned() {
+        return songsPlanned;
+    }
+
+    public int getPartsAnalysed() {
+        return partsAnalysed;
+    }
+
+    public int getSongsFound() {
+        return songsFound;
+    }
+
+    public int getSongsSkipped() {
+        return songsSkipped;
+    }
+
+    public int getSongsDuplicated() {
+        return songsDuplicated;
+    }
+
+    /**
+     * @return <code>true</code> if duplicates were found by content hash,
+     * <code>false</code> if they are only estimated by size of parts before trimming
+     */
+    public boolean isDuplicatesHashed() {
+        return duplicatesHashed;
+    }
+
+    public int getSongsFiltered() {
+        return songsFiltered;
+    }
+
+    /**
+     * @return Bytes of planned songs: trimmed content, if it was hashed, otherwise size of parts
+     */
+    public long getBytesToCopy() {
+        return bytesToCopy;
+    }
+
+    public long getScanNanos() {
+        return scanNanos;
+    }
+
+    /**
+     * @return Measured read speed of cache in bytes per second or <code>0</code> if nothing was read
+     */
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+}
@@ -0,0 +1,77 @@
+package javacore.coop.cachemusic;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Per-track report of harvest.<br>
+ * Stored at output folder as tab separated table, that is rewritten by every harvest.
+ * Line is appended as soon as track is assembled, so report of watch mode grows while it works.<br>
+ * Tracks may be reported concurrently by several assemblers.
+ */
+public class HarvestReport {
+    public final static String FILE_NAME = "harvest-report.tsv";
+
+    private final static String SEPARATOR = "\t";
+    private final static String HEADER = String.join(SEPARATOR,
+            "track", "parts", "bytes", "frames", "bitrate_kbps", "duration_s", "status", "duplicate");
+
+    private final Path file;
+    private boolean started = false;
+    private int incompleteTracks = 0;
+
+    /**
+     * @param outputFolder Folder with harvested tracks
+     */
+    public HarvestReport(Path outputFolder) {
+        this.file = outputFolder.resolve(FILE_NAME);
+    }
+
+    /**
+     * Appends track to report. Report of previous harvest is replaced by the first track.
+     *
+     * @param parts  Count of song's parts
+     * @param result Result of song's assembly
+     */
+    public synchronized void record(int parts, BuildResult result) {
+        AudioReport audio = result.getAudio();
+        if (!result.isDuplicate() && audio.getStatus() != AudioReport.Status.OK) incompleteTracks++;
+
+        String line = String.join(SEPARATOR,
+                result.getTrack().getFileName().toString().replaceAll("[\t\r\n]", " "),
+                String.valueOf(parts),
+                String.valueOf(result.getBytesWritten()),
+                String.valueOf(audio.getFrames()),
+                String.valueOf(audio.getBitrateKbps()),
+                String.format(Locale.ROOT, "%.1f", audio.getDurationSeconds()),
+                audio.getStatus().name(),
+                String.valueOf(result.isDuplicate()));
+        try {
+            if (!started) {
+                Files.createDirectories(file.getParent());
+                Files.write(file, (HEADER + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+                started = true;
+            }
+            Files.write(file, (line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Harvest report can't be written!\n" + e.getMessage());
+        }
+    }
+
+    // GETTERS
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return Count of written tracks, that are truncated, corrupted or have no audio
+     */
+    public synchronized int getIncompleteTracks() {
+        return incompleteTracks;
+    }
+}
@@ -0,0 +1,28 @@
+package javacore.coop.cachemusic;
+
+/**
+ * Constants of ID3v2.3 tag: lengths of header and frame fields and IDs of frames, that are read
+ */
+class ID3v23 {
+    public static final String META_TAG = "ID3";
+    public static final String TAG_ID3v2_REVERSED = "3DI";
+    public static final int POST_PENDED_HEADER_LENGTH_BYTES = 10;
+
+    public static final int TAG_LENGTH_BYTES = 3;
+    public static final int VERSION_LENGTH_BYTES = 1;
+    public static final int SUBVERSION_LENGTH_BYTES = 1;
+    public static final int FLAGS_LENGTH_BYTES = 1;
+    public static final int HEADER_SIZE_LENGTH_BYTES = 4;
+
+    public static final int FRAME_ID_LENGTH_BYTES = 4;
+    public static final int FRAME_SIZE_LENGTH_BYTES = 4;
+    public static final int FRAME_FLAGS_LENGTH_BYTES = 2;
+    public static final int ENCODING_LENGTH_BYTES = 1;
+
+    public static final String ARTIST = "TPE1";
+    public static final String TITLE = "TIT2";
+    public static final String ALBUM = "TALB";
+    public static final String YEAR = "TYER";
+    public static final String COMMENT = "COMM";
+    public static final String GENRE = "TCON";
+}
@@ -0,0 +1,358 @@
+package javacore.coop.cachemusic;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lazy index of frames of ID3v2.2, ID3v2.3 and ID3v2.4 tag at start of file.<br>
+ * Tag is read by small chunks. Frames are walked only until requested frame is found,
+ * and only headers of passed frames are read, so big frames (e.g. <code>APIC</code> album art) are never read.
+ * Frames are requested by ID3v2.3 IDs, which are translated to 3 chars IDs for ID3v2.2 tags.
+ */
+public class ID3v2FrameIndex {
+    private final static int CHUNK_SIZE_BYTES = 4096;
+
+    private final static int TAG_HEADER_LENGTH_BYTES = 10;
+    private final static int V22_FRAME_HEADER_LENGTH_BYTES = 6;
+    private final static int FRAME_HEADER_LENGTH_BYTES = 10;
+    private final static int SIZE_LENGTH_BYTES = 4;
+
+    // Tag header flags
+    private final static int FLAG_UNSYNC = 0b1000_0000;
+    private final static int FLAG_EXTENDED_HEADER = 0b0100_0000;
+    private final static int FLAG_EXPERIMENTAL = 0b0010_0000;
+    // ID3v2.2 tag header flag
+    private final static int FLAG_V22_COMPRESSION = 0b0100_0000;
+    // ID3v2.3 frame format flags
+    private final static int FLAG_V23_COMPRESSION = 0b1000_0000;
+    private final static int FLAG_V23_ENCRYPTION = 0b0100_0000;
+    private final static int FLAG_V23_GROUPING = 0b0010_0000;
+    // ID3v2.4 frame format flags
+    private final static int FLAG_V24_GROUPING = 0b0100_0000;
+    private final static int FLAG_V24_COMPRESSION = 0b0000_1000;
+    private final static int FLAG_V24_ENCRYPTION = 0b0000_0100;
+    private final static int FLAG_V24_UNSYNC = 0b0000_0010;
+    private final static int FLAG_V24_DATA_LENGTH = 0b0000_0001;
+
+    private final static Map<String, String> V22_FRAME_IDS = new HashMap<>();
+
+    static {
+        V22_FRAME_IDS.put(ID3v23.TITLE, "TT2");
+        V22_FRAME_IDS.put(ID3v23.ARTIST, "TP1");
+        V22_FRAME_IDS.put(ID3v23.ALBUM, "TAL");
+        V22_FRAME_IDS.put(ID3v23.YEAR, "TYE");
+        V22_FRAME_IDS.put(ID3v23.COMMENT, "COM");
+        V22_FRAME_IDS.put(ID3v23.GENRE, "TCO");
+        V22_FRAME_IDS.put("APIC", "PIC");
+    }
+
+    /**
+     * Position and framing of one frame's data.
+     */
+    private static class Frame {
+        private final long dataPosition;
+        private final int dataSize;
+        private final boolean readable;
+        private final boolean unsync;
+
+        private Frame(long dataPosition, int dataSize, boolean readable, boolean unsync) {
+            this.dataPosition = dataPosition;
+            this.dataSize = dataSize;
+            this.readable = readable;
+            this.unsync = unsync;
+        }
+    }
+
+    private final FileChannel channel;
+    private final int version;
+    private final int revision;
+    private final int flags;
+    private final long tagEnd;
+    private final long readEnd;
+    private final Map<Integer, Frame> frames = new HashMap<>();
+    private long nextFramePosition;
+    private boolean walked = false;
+
+    // Last read chunk of tag
+    private ByteBuffer chunk = ByteBuffer.allocate(0);
+    private long chunkPosition = 0;
+
+    private ID3v2FrameIndex(FileChannel channel, ByteBuffer header, long fileSize) {
+        this.channel = channel;
+        this.version = header.get(3);
+        this.revision = header.get(4);
+        this.flags = header.get(5) & 0xFF;
+        this.tagEnd = TAG_HEADER_LENGTH_BYTES + (long) syncsafe(header, 6);
+        this.readEnd = Math.min(fileSize, tagEnd); // tag may continue at next part
+        this.nextFramePosition = TAG_HEADER_LENGTH_BYTES;
+    }
+
+    /**
+     * Opens index of tag at start of file.
+     *
+     * @param channel Channel of file
+     * @return Index or <code>null</code> if file doesn't start with supported ID3v2 tag
+     * @throws IOException If an I/O error occurs
+     */
+    public static ID3v2FrameIndex open(FileChannel channel) throws IOException {
+        return open(channel, null);
+    }
+
+    /**
+     * Opens index of tag at start of file, which first bytes are already read.<br>
+     * Index reads first bytes from <code>head</code> while it is used, so buffer must not be changed until then.
+     *
+     * @param channel Channel of file
+     * @param head    First bytes of file from position to limit or <code>null</code>
+     * @return Index or <code>null</code> if file doesn't start with supported ID3v2 tag
+     * @throws IOException If an I/O error occurs
+     */
+    public static ID3v2FrameIndex open(FileChannel channel, ByteBuffer head) throws IOException {
+        ByteBuffer header;
+        if (head != null && head.remaining() >= TAG_HEADER_LENGTH_BYTES) {
+            header = head.slice();
+        } else {
+            byte[] bytes = new byte[Math.min(CHUNK_SIZE_BYTES, (int) Math.min(channel.size(), Integer.MAX_VALUE))];
+            int read = Metadata.readFully(channel, 0, bytes, 0, bytes.length);
+            if (read < TAG_HEADER_LENGTH_BYTES) return null;
+            header = ByteBuffer.wrap(bytes, 0, read);
+        }
+        if (header.get(0) != 'I' || header.get(1) != 'D' || header.get(2) != '3') return null;
+
+        int version = header.get(3);
+        if (version < 2 || version > 4) return null;
+
+        ID3v2FrameIndex index = new ID3v2FrameIndex(channel, header, channel.size());
+        index.chunk = header;
+        if (version == 2 && (index.flags & FLAG_V22_COMPRESSION) != 0) {
+            index.walked = true; // compression of ID3v2.2 was never defined, frames can't be read
+        } else if (version >= 3 && (index.flags & FLAG_EXTENDED_HEADER) != 0) {
+            index.skipExtendedHeader();
+        }
+        return index;
+    }
+
+    /**
+     * Skips extended header. Its size excludes size field at ID3v2.3 and includes it at ID3v2.4.
+     */
+    private void skipExtendedHeader() throws IOException {
+        ByteBuffer size = bytes(nextFramePosition, SIZE_LENGTH_BYTES);
+        if (size.remaining() < SIZE_LENGTH_BYTES) {
+            walked = true;
+            return;
+        }
+        nextFramePosition += version == 3
+                ? SIZE_LENGTH_BYTES + (size.getInt(size.position()) & 0xFFFF_FFFFL)
+                : syncsafe(size, size.position());
+    }
+
+    /**
+     * Reads text of frame.
+     *
+     * @param frameID ID3v2.3 ID of text frame, e.g. <code>TIT2</code>
+     * @return First value of frame or <code>null</code> if tag has no such readable frame
+     * @throws IOException If an I/O error occurs
+     */
+    public String text(String frameID) throws IOException {
+        Frame frame = find(frameID);
+        if (frame == null || !frame.readable || frame.dataSize <= ID3v23.ENCODING_LENGTH_BYTES) return null;
+
+        ByteBuffer data = bytes(frame.dataPosition, frame.dataSize);
+        if (frame.unsync) data = resynchronize(data);
+        if (data.remaining() <= ID3v23.ENCODING_LENGTH_BYTES) return null;
+
+        Charset charset;
+        switch (data.get()) {
+            case 0:
+                charset = StandardCharsets.ISO_8859_1;
+                break;
+            case 1:
+                charset = StandardCharsets.UTF_16;
+                break;
+            case 2:
+                charset = StandardCharsets.UTF_16BE;
+                break;
+            case 3:
+            default:
+                charset = StandardCharsets.UTF_8;
+                break;
+        }
+        String text = charset.decode(data).toString();
+        int terminator = text.indexOf('\u0000'); // ends first of several values
+        return terminator < 0 ? text : text.substring(0, terminator);
+    }
+
+    /**
+     * Checks for frame at tag.
+     *
+     * @param frameID ID3v2.3 ID of frame
+     * @return <code>true</code> if tag contains frame
+     * @throws IOException If an I/O error occurs
+     */
+    public boolean contains(String frameID) throws IOException {
+        return find(frameID) != null;
+    }
+
+    /**
+     * Searches for first frame with ID. Frames are walked only until it is found.
+     */
+    private Frame find(String frameID) throws IOException {
+        String id = version == 2 ? V22_FRAME_IDS.get(frameID) : frameID;
+        if (id == null) return null;
+
+        int key = frameKey(id);
+        Frame frame = frames.get(key);
+        while (frame == null && !walked) {
+            walkNextFrame();
+            frame = frames.get(key);
+        }
+        return frame;
+    }
+
+    /**
+     * Reads header of next frame and indexes it. Marks tag as walked at padding, end of tag or broken header.
+     */
+    private void walkNextFrame() throws IOException {
+        int headerLength = version == 2 ? V22_FRAME_HEADER_LENGTH_BYTES : FRAME_HEADER_LENGTH_BYTES;
+        ByteBuffer header = bytes(nextFramePosition, headerLength);
+        if (header.remaining() < headerLength || header.get(header.position()) == 0) { // end of tag or padding
+            walked = true;
+            return;
+        }
+
+        int start = header.position();
+        int id;
+        long size;
+        int formatFlags = 0;
+        if (version == 2) {
+            id = frameKey(header, start, 3);
+            size = ((header.get(start + 3) & 0xFF) << 16) | ((header.get(start + 4) & 0xFF) << 8)
+                    | (header.get(start + 5) & 0xFF);
+        } else {
+            id = frameKey(header, start, 4);
+            size = version == 3 ? header.getInt(start + 4) & 0xFFFF_FFFFL : syncsafe(header, start + 4);
+            formatFlags = header.get(start + 9) & 0xFF;
+        }
+
+        long dataPosition = nextFramePosition + headerLength;
+        if (size > tagEnd - dataPosition) { // header was incorrect
+            walked = true;
+            return;
+        }
+        nextFramePosition = dataPosition + size;
+        if (nextFramePosition >= tagEnd) walked = true;
+        if (frames.containsKey(id)) return;
+
+        boolean readable = true;
+        boolean unsync = (flags & FLAG_UNSYNC) != 0;
+        int prefixLength = 0;
+        if (version == 3) {
+            readable = (formatFlags & (FLAG_V23_COMPRESSION | FLAG_V23_ENCRYPTION)) == 0;
+            if ((formatFlags & FLAG_V23_GROUPING) != 0) prefixLength += 1;
+        } else if (version == 4) {
+            readable = (formatFlags & (FLAG_V24_COMPRESSION | FLAG_V24_ENCRYPTION)) == 0;
+            unsync |= (formatFlags & FLAG_V24_UNSYNC) != 0;
+            if ((formatFlags & FLAG_V24_GROUPING) != 0) prefixLength += 1;
+            if ((formatFlags & FLAG_V24_DATA_LENGTH) != 0) prefixLength += SIZE_LENGTH_BYTES;
+        }
+        if (size - prefixLength > Integer.MAX_VALUE) readable = false;
+        frames.put(id, new Frame(dataPosition + prefixLength, (int) Math.max(0, size - prefixLength),
+                readable, unsync));
+    }
+
+    /**
+     * Returns bytes of tag from chunk, reading next chunk if requested bytes are outside of the last one.
+     * Requests bigger than chunk are read to separate buffer.
+     *
+     * @return Buffer positioned at requested bytes. It has less bytes if tag or file ends earlier.
+     */
+    private ByteBuffer bytes(long position, int length) throws IOException {
+        long available = Math.max(0, Math.min(length, readEnd - position));
+        if (position >= chunkPosition && position + available <= chunkPosition + chunk.limit()) {
+            ByteBuffer result = chunk.duplicate();
+            result.position((int) (position - chunkPosition));
+            result.limit((int) (position - chunkPosition + available));
+            return result;
+        }
+
+        byte[] bytes = new byte[(int) Math.max(available, Math.min(CHUNK_SIZE_BYTES, readEnd - position))];
+        int read = Metadata.readFully(channel, position, bytes, 0, bytes.length);
+        ByteBuffer result = ByteBuffer.wrap(bytes, 0, (int) Math.min(read, available));
+        if (bytes.length <= CHUNK_SIZE_BYTES) {
+            chunk = ByteBuffer.wrap(bytes, 0, read);
+            chunkPosition = position;
+        }
+        return result;
+    }
+
+    /**
+     * Removes bytes <code>0x00</code>, that were inserted after <code>0xFF</code> by unsynchronisation.
+     */
+    private static ByteBuffer resynchronize(ByteBuffer data) {
+        byte[] bytes = new byte[data.remaining()];
+        int length = 0;
+        boolean afterFF = false;
+        while (data.hasRemaining()) {
+            byte b = data.get();
+            if (!(afterFF && b == 0)) bytes[length++] = b;
+            afterFF = b == (byte) 0xFF;
+        }
+        return ByteBuffer.wrap(bytes, 0, length);
+    }
+
+    /**
+     * Decodes 4 bytes syncsafe integer: 7 significant bits per byte.
+     */
+    private static int syncsafe(ByteBuffer buffer, int offset) {
+        int value = 0;
+        for (int i = offset; i < offset + SIZE_LENGTH_BYTES; i++) {
+            value = (value << 7) | (buffer.get(i) & 0b0111_1111);
+        }
+        return value;
+    }
+
+    /**
+     * Packs chars of frame's ID to integer, so frames can be compared without making strings.
+     */
+    private static int frameKey(String id) {
+        int value = 0;
+        for (int i = 0; i < id.length(); i++) {
+            value = (value << 8) | (id.charAt(i) & 0xFF);
+        }
+        return value;
+    }
+
+    private static int frameKey(ByteBuffer buffer, int offset, int length) {
+        int value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            value = (value << 8) | (buffer.get(i) & 0xFF);
+        }
+        return value;
+    }
+
+    // GETTERS
+    public int getVersion() {
+        return version;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    public boolean isUnsync() {
+        return (flags & FLAG_UNSYNC) != 0;
+    }
+
+    public boolean hasExtendedHeader() {
+        return version >= 3 && (flags & FLAG_EXTENDED_HEADER) != 0;
+    }
+
+    public boolean isExperimental() {
+        return version >= 3 && (flags & FLAG_EXPERIMENTAL) != 0;
+    }
+}
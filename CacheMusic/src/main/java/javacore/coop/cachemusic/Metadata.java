@@ -0,0 +1,427 @@
+package javacore.coop.cachemusic;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+class ID3v1 {
+    public static final String META_TAG = "TAG";
+    public static final int HEADER_LENGTH = 128;
+
+    public static final int TAG_LENGTH_BYTES = 3;
+    public static final int TITLE_LENGTH_BYTES = 30;
+    public static final int ARTIST_LENGTH_BYTES = 30;
+    public static final int ALBUM_LENGTH_BYTES = 30;
+    public static final int YEAR_LENGTH_BYTES = 4;
+    public static final int COMMENT_LENGTH_BYTES = 30; // here is also "Track's number at album" at last 2 bytes
+    public static final int GENRE_LENGTH_BYTES = 1;
+}
+
+/**
+ * Class for working with ID3 metadata
+ */
+public class Metadata {
+    public enum FormatName {NONE, ID3v1, ID3v2, ID3v23}
+
+    // FIELDS
+    private String artist = null;
+    private String tag = null;
+    private FormatName format = FormatName.NONE;
+    private String title = null;
+    private int subversion;
+    private int version;
+
+    private boolean flagUnsync = false;
+    private boolean flagExtendedHeader = false;
+    private boolean flagExperIndicator = false;
+
+    private Metadata() {
+    }
+
+    // CONSTANTS
+    private static final int MAX_PRE_TAG_LENGTH_BYTES = 3;
+    static final int ID3V1_HEADER_LENGTH_BYTES = ID3v1.HEADER_LENGTH;
+
+    // GETTERS
+    public String getArtist() {
+        return artist;
+    }
+
+    public FormatName getFormat() {
+        return format;
+    }
+
+    public int getSubversion() {
+        return subversion;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Checks for metadata at file.
+     *
+     * @param filePath Path to file
+     * @return <code>true</code> - if contains metadata<br><code>false</code> - if not found
+     */
+    public static boolean contains(String filePath) {
+        return contains(Paths.get(filePath));
+    }
+
+    /**
+     * Checks for metadata at file.
+     *
+     * @param filePath Path to file
+     * @return <code>true</code> - if contains metadata<br><code>false</code> - if not found
+     */
+    public static boolean contains(Path filePath) {
+        try {
+            return MetadataCache.shared().get(filePath).hasMetadata();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks for metadata at start of file.
+     *
+     * @param filePath Path to file
+     * @return <code>true</code> - if contains metadata<br><code>false</code> - if not found
+     */
+    public static boolean containsAtStart(Path filePath) {
+        return getFormatAtStart(filePath) != FormatName.NONE;
+
+    }
+
+    /**
+     * Checks for metadata at end of file.
+     *
+     * @param filePath Path to file
+     * @return <code>true</code> - Contains metadata<br><code>false</code> - Header not found
+     */
+    public static boolean containsAtEnd(Path filePath) {
+        return getFormatAtEnd(filePath) != FormatName.NONE;
+    }
+
+    /**
+     * Checks for metadata at file.
+     *
+     * @param filePath Path to file
+     * @return Found metadata format
+     */
+    public static FormatName getFormat(Path filePath) {
+        FormatName formatAtStart = getFormatAtStart(filePath);
+        if (formatAtStart != FormatName.NONE) {
+            return formatAtStart;
+        } else {
+            FormatName formatAtEnd = getFormatAtStart(filePath);
+            if (formatAtEnd != FormatName.NONE) {
+                return formatAtEnd;
+            }
+        }
+        return FormatName.NONE;
+    }
+
+    /**
+     * Checks for metadata at start of file.
+     *
+     * @param filePath Path to file
+     * @return Found metadata format
+     */
+    public static FormatName getFormatAtStart(Path filePath) {
+        if (!Files.exists(filePath) || Files.isDirectory(filePath)) return FormatName.NONE;
+
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            byte[] header = new byte[MAX_PRE_TAG_LENGTH_BYTES];
+            return detectFormatAtStart(ByteBuffer.wrap(header, 0, readFully(channel, 0, header, 0, header.length)));
+        } catch (Exception e) {
+            return FormatName.NONE;
+        }
+    }
+
+    /**
+     * Checks for metadata at end of file.
+     *
+     * @param filePath Path to file
+     * @return Metadata format
+     */
+    public static FormatName getFormatAtEnd(Path filePath) {
+        if (!Files.exists(filePath) || Files.isDirectory(filePath)) return FormatName.NONE;
+
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            long fileSizeInBytes = channel.size();
+            byte[] tail = new byte[(int) Math.min(fileSizeInBytes, ID3v1.HEADER_LENGTH)];
+            int readBytes = readFully(channel, fileSizeInBytes - tail.length, tail, 0, tail.length);
+            return detectFormatAtEnd(ByteBuffer.wrap(tail, 0, readBytes));
+        } catch (IOException e) {
+            return FormatName.NONE;
+        }
+    }
+
+    /**
+     * Detects metadata format by first bytes of file.<br>
+     * Bytes are compared in place, so detection doesn't allocate.
+     *
+     * @param head First bytes of file from position to limit
+     * @return Found metadata format
+     */
+    static FormatName detectFormatAtStart(ByteBuffer head) {
+        if (head.remaining() < MAX_PRE_TAG_LENGTH_BYTES) return FormatName.NONE;
+
+        if (regionMatches(head, head.position(), ID3v1.META_TAG)) return FormatName.ID3v1;
+        if (regionMatches(head, head.position(), ID3v23.META_TAG)) return FormatName.ID3v23;
+        return FormatName.NONE;
+    }
+
+    /**
+     * Detects metadata format by last bytes of file.
+     *
+     * @param tail Last bytes of file (up to {@link ID3v1#HEADER_LENGTH}) from position to limit
+     * @return Found metadata format
+     */
+    static FormatName detectFormatAtEnd(ByteBuffer tail) {
+        if (tail.remaining() < ID3v23.POST_PENDED_HEADER_LENGTH_BYTES) return FormatName.NONE;
+        if (contains(tail, tail.limit() - ID3v23.POST_PENDED_HEADER_LENGTH_BYTES, ID3v23.TAG_ID3v2_REVERSED)) {
+            return FormatName.ID3v2;
+        }
+
+        if (tail.remaining() < ID3v1.HEADER_LENGTH) return FormatName.NONE;
+        if (contains(tail, tail.limit() - ID3v1.HEADER_LENGTH, ID3v1.META_TAG)) {
+            return FormatName.ID3v1;
+        }
+
+        return FormatName.NONE;
+    }
+
+    /**
+     * Searches for ASCII tag between <code>from</code> and limit of buffer, ignoring case.
+     */
+    private static boolean contains(ByteBuffer bytes, int from, String tag) {
+        for (int i = from; i + tag.length() <= bytes.limit(); i++) {
+            if (regionMatches(bytes, i, tag)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Compares bytes at absolute index with ASCII tag, ignoring case.
+     */
+    private static boolean regionMatches(ByteBuffer bytes, int index, String tag) {
+        for (int i = 0; i < tag.length(); i++) {
+            int b = bytes.get(index + i) & 0xFF;
+            if (b >= 'a' && b <= 'z') b -= 'a' - 'A';
+            if (b != tag.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads bytes from channel at absolute position until <code>buffer</code> is full or end of file is reached.
+     *
+     * @param channel  Source channel
+     * @param position Position at channel to read from
+     * @param buffer   Destination array
+     * @param offset   Offset at destination array
+     * @param length   Count of bytes to read
+     * @return Count of read bytes
+     * @throws IOException If an I/O error occurs
+     */
+    static int readFully(FileChannel channel, long position, byte[] buffer, int offset, int length) throws IOException {
+        return readFully(channel, position, ByteBuffer.wrap(buffer, offset, length));
+    }
+
+    /**
+     * Reads bytes from channel at absolute position until <code>target</code> is full or end of file is reached.
+     *
+     * @param channel  Source channel
+     * @param position Position at channel to read from
+     * @param target   Destination buffer, read bytes are put from its position
+     * @return Count of read bytes
+     * @throws IOException If an I/O error occurs
+     */
+    static int readFully(FileChannel channel, long position, ByteBuffer target) throws IOException {
+        int start = target.position();
+        while (target.hasRemaining()) {
+            int read = channel.read(target, position + target.position() - start);
+            if (read < 0) break;
+        }
+        HarvestMetrics.shared().addBytesRead(target.position() - start);
+        return target.position() - start;
+    }
+
+    /**
+     * Checks that header starts with ID3v1 tag.
+     *
+     * @param header Header with data from position to limit
+     * @return <code>true</code> - if header starts with ID3v1 tag
+     */
+    static boolean isID3v1(ByteBuffer header) {
+        int start = header.position();
+        return header.remaining() >= ID3v1.TAG_LENGTH_BYTES
+                && header.get(start) == 'T' && header.get(start + 1) == 'A' && header.get(start + 2) == 'G';
+    }
+
+    /**
+     * Trying to parse 128 bytes header as ID3v1.
+     *
+     * @param header Header with data from position to limit. Position is not changed.
+     * @return Metadata with header's information or <code>null</code> if ID3v1 information not found
+     */
+    static Metadata parseID3v1(ByteBuffer header) {
+        Metadata meta = null;
+        if (header.hasRemaining()) {
+            meta = new Metadata();
+            final String TAGS_ENCODING = "UTF-8";
+
+            ByteBuffer fields = header.duplicate();
+            byte[] buffer;
+            try {
+                buffer = new byte[ID3v1.TAG_LENGTH_BYTES];
+                fields.get(buffer);
+                meta.tag = new String(buffer, TAGS_ENCODING);
+                if (meta.tag.toUpperCase().equals("TAG")) {
+                    meta.format = FormatName.ID3v1;
+                    final String DATA_ENCODING = "ISO_8859_1";
+
+                    buffer = new byte[ID3v1.TITLE_LENGTH_BYTES];
+                    fields.get(buffer);
+                    meta.title = new String(buffer, DATA_ENCODING);
+
+                    buffer = new byte[ID3v1.ARTIST_LENGTH_BYTES];
+                    fields.get(buffer);
+                    meta.artist = new String(buffer, DATA_ENCODING);
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        return meta;
+    }
+
+    /**
+     * Reads metadata from file.<br>
+     * Parsed metadata is cached at {@link MetadataCache#shared()} until file is changed.
+     *
+     * @param filePath Path to file
+     * @return Metadata information. If metadata not found returns <code>null</code>.
+     * @throws UncheckedIOException          If file can't be read
+     * @throws UnsupportedOperationException If file has neither readable tag at start nor ID3v1 tag at end
+     */
+    public static Metadata read(String filePath) {
+        CachePart part;
+        try {
+            part = MetadataCache.shared().get(Paths.get(filePath));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (part.getMetadata() == null && part.getFormatAtEnd() != FormatName.ID3v1) {
+            throw new UnsupportedOperationException("Only ID3v1 post-pended format supported");
+        }
+
+        return part.getMetadata();
+    }
+
+    /**
+     * Trying to read ID3v1 header from file.
+     *
+     * @param file        Path to file
+     * @param readFromEnd Should the title search be at the end of the file
+     * @return Read Metadata or <code>null</code> if ID3v1 metadata not found
+     */
+    public static Metadata readID3v1(String file, boolean readFromEnd) {
+        Metadata meta = null;
+
+        final String TAGS_ENCODING = "UTF-8";
+        byte[] buffer;
+        byte[] header = new byte[ID3v1.HEADER_LENGTH];
+        try (FileInputStream fileStream = new FileInputStream(file)) {
+            if (readFromEnd) {
+                File f = new File(file);
+                fileStream.skip(f.length() - header.length);
+            }
+            int readBytes = fileStream.read(header);
+            if (readBytes > 0) {
+                buffer = new byte[ID3v1.TAG_LENGTH_BYTES];
+                System.arraycopy(header, 0, buffer, 0, buffer.length);
+                if (new String(buffer, TAGS_ENCODING).equals("TAG")) {
+                    meta = parseID3v1(ByteBuffer.wrap(header));
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace(System.err);
+        }
+
+        return meta;
+    }
+
+    /**
+     * Trying to read ID3v1 header from file.
+     *
+     * @param file Path to file
+     * @return Read Metadata or <code>null</code> if ID3v1 metadata not found
+     */
+    public static Metadata readID3v1(String file) {
+        Metadata meta = readID3v1(file, false);
+
+        if (meta == null) {
+            meta = readID3v1(file, true);
+        }
+
+        return meta;
+    }
+
+    /**
+     * Trying to read ID3v2 header (versions 2.2, 2.3 and 2.4) from file.
+     *
+     * @param file Path to file
+     * @return Read Metadata
+     */
+    public static Metadata readID3v23(String file) {
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            ID3v2FrameIndex index = ID3v2FrameIndex.open(channel);
+            return index == null ? new Metadata() : readID3v2(index);
+        } catch (Exception e) {
+            e.printStackTrace(System.err);
+            return new Metadata();
+        }
+    }
+
+    /**
+     * Reads title and artist through frame index. Tag is walked only until both frames are found.
+     *
+     * @param index Index of tag's frames
+     * @return Parsed Metadata
+     * @throws IOException If an I/O error occurs
+     */
+    static Metadata readID3v2(ID3v2FrameIndex index) throws IOException {
+        Metadata meta = new Metadata();
+        meta.tag = ID3v23.META_TAG;
+        meta.format = FormatName.ID3v23;
+        meta.version = index.getVersion();
+        meta.subversion = index.getRevision();
+        meta.flagUnsync = index.isUnsync();
+        meta.flagExtendedHeader = index.hasExtendedHeader();
+        meta.flagExperIndicator = index.isExperimental();
+
+        meta.title = index.text(ID3v23.TITLE);
+        meta.artist = index.text(ID3v23.ARTIST);
+        return meta;
+    }
+}
@@ -0,0 +1,106 @@
+package javacore.coop.cachemusic;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of probed parts with their parsed {@link Metadata}.<br>
+ * Entries are keyed by absolute path and are valid only while file's size and time of last modification
+ * are the same as at probing, so changed file is probed again.
+ */
+public class MetadataCache {
+    public final static int DEFAULT_CAPACITY = 4096;
+
+    private final static MetadataCache SHARED = new MetadataCache(DEFAULT_CAPACITY);
+
+    private final Map<Path, CachePart> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param capacity Max count of cached files. Least recently used files are evicted first.
+     */
+    public MetadataCache(final int capacity) {
+        this.entries = new LinkedHashMap<Path, CachePart>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, CachePart> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return Cache shared by {@link Metadata}, {@link CacheReader} and {@link PartScanner}
+     */
+    public static MetadataCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns cached descriptor of file or probes file, if it isn't cached or was changed.
+     *
+     * @param filePath Path to file
+     * @return Descriptor of file
+     * @throws IOException If file can't be read
+     */
+    public CachePart get(Path filePath) throws IOException {
+        Path key = filePath.toAbsolutePath();
+        BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        CachePart part;
+        synchronized (entries) {
+            part = entries.get(key);
+        }
+        if (part != null && part.getSize() == attributes.size()
+                && part.getLastModified() == attributes.lastModifiedTime().toMillis()) {
+            hits.incrementAndGet();
+            return part;
+        }
+
+        misses.incrementAndGet();
+        return PartScanner.probe(key); // probed part is put to cache by scanner
+    }
+
+    /**
+     * Puts probed file to cache.
+     *
+     * @param part Descriptor of probed file
+     */
+    public void put(CachePart part) {
+        synchronized (entries) {
+            entries.put(part.getPath().toAbsolutePath(), part);
+        }
+    }
+
+    /**
+     * Removes all cached files and resets counters.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+
+    // GETTERS
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package javacore.coop.cachemusic;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Streaming validator of MPEG audio (MPEG-1, MPEG-2, MPEG-2.5, layers I-III).<br>
+ * Receives track's bytes chunk by chunk, while they are copied, and follows frame headers:
+ * bodies of frames are skipped without looking at them.
+ * ID3v2 tag at start and ID3v1 tag at end are not considered as lost bytes.
+ */
+public class MpegFrameScanner {
+    private final static int FRAME_HEADER_LENGTH_BYTES = 4;
+    private final static int ID3V2_HEADER_LENGTH_BYTES = 10;
+    private final static int ID3V2_FOOTER_FLAG = 0b0001_0000;
+    private final static byte[] ID3V2_TAG = {'I', 'D', '3'};
+    private final static byte[] ID3V1_TAG = {'T', 'A', 'G'};
+
+    // Version bits: 0 - MPEG-2.5, 1 - reserved, 2 - MPEG-2, 3 - MPEG-1
+    private final static int VERSION_MPEG1 = 3;
+    private final static int VERSION_RESERVED = 1;
+    // Layer bits: 1 - layer III, 2 - layer II, 3 - layer I
+    private final static int LAYER_I = 3;
+    private final static int LAYER_II = 2;
+    private final static int LAYER_III = 1;
+
+    // kbit/s by [MPEG-1 ? 0 : 1][layer bits][bitrate index]
+    private final static int[][][] BITRATES = {
+            {
+                    {},
+                    {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+                    {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+                    {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448}
+            },
+            {
+                    {},
+                    {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},
+                    {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},
+                    {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256}
+            }
+    };
+    // Hz by [version bits][sample rate index]
+    private final static int[][] SAMPLE_RATES = {
+            {11025, 12000, 8000},
+            {},
+            {22050, 24000, 16000},
+            {44100, 48000, 32000}
+    };
+
+    // Bytes, that are not classified yet
+    private final byte[] pending = new byte[ID3V2_HEADER_LENGTH_BYTES];
+    private int pendingLength = 0;
+    private boolean started = false;
+    private long skip = 0;
+
+    // Current run of bytes out of frames and its first bytes
+    private long junk = 0;
+    private final byte[] junkHead = new byte[ID3V1_TAG.length];
+
+    // Header fields, that must be the same at every frame of track
+    private int streamSignature = -1;
+
+    // STATISTICS
+    private long frames = 0;
+    private long audioBytes = 0;
+    private double durationSeconds = 0;
+    private long lostBytes = 0;
+
+    /**
+     * Follows frames through next chunk of track. Buffer's position is moved to its limit.
+     *
+     * @param chunk Next bytes of track
+     */
+    public void scan(ByteBuffer chunk) {
+        while (chunk.hasRemaining()) {
+            if (skip > 0) {
+                int skipped = (int) Math.min(skip, chunk.remaining());
+                chunk.position(chunk.position() + skipped);
+                skip -= skipped;
+                continue;
+            }
+            pending[pendingLength++] = chunk.get();
+            classifyPending();
+        }
+    }
+
+    /**
+     * Classifies pending bytes as ID3v2 tag, frame or junk, if there are enough of them.
+     */
+    private void classifyPending() {
+        while (pendingLength > 0) {
+            if (!started) {
+                boolean tagPrefix = startsWith(pending, pendingLength, ID3V2_TAG);
+                if (tagPrefix && pendingLength < ID3V2_HEADER_LENGTH_BYTES) return;
+
+                started = true;
+                if (tagPrefix) {
+                    skip = ID3V2_HEADER_LENGTH_BYTES + syncsafe(pending, 6) - pendingLength;
+                    if ((pending[5] & ID3V2_FOOTER_FLAG) != 0) skip += ID3V2_HEADER_LENGTH_BYTES;
+                    pendingLength = 0;
+                    return;
+                }
+            }
+
+            if ((pending[0] & 0xFF) != 0xFF) {
+                dropJunkByte();
+                continue;
+            }
+            if (pendingLength < FRAME_HEADER_LENGTH_BYTES) return;
+
+            if (!acceptFrame()) {
+                dropJunkByte();
+                continue;
+            }
+            return;
+        }
+    }
+
+    /**
+     * Parses frame header at start of pending bytes and, if it is correct, counts frame and skips its body.
+     *
+     * @return <code>false</code> if pending bytes don't start with frame header
+     */
+    private boolean acceptFrame() {
+        int b1 = pending[1] & 0xFF;
+        int b2 = pending[2] & 0xFF;
+        if ((b1 & 0xE0) != 0xE0) return false; // rest of frame sync
+
+        int version = (b1 >> 3) & 0b11;
+        int layer = (b1 >> 1) & 0b11;
+        int bitrateIndex = b2 >> 4;
+        int sampleRateIndex = (b2 >> 2) & 0b11;
+        if (version == VERSION_RESERVED || layer == 0 || bitrateIndex == 0 || bitrateIndex == 0b1111
+                || sampleRateIndex == 0b11) {
+            return false; // reserved values or free format
+        }
+
+        int signature = (b1 & 0b1111_1110) << 8 | sampleRateIndex;
+        if (streamSignature >= 0 && signature != streamSignature) return false;
+
+        int bitrate = BITRATES[version == VERSION_MPEG1 ? 0 : 1][layer][bitrateIndex] * 1000;
+        int sampleRate = SAMPLE_RATES[version][sampleRateIndex];
+        int padding = (b2 >> 1) & 1;
+        int frameLength;
+        int samples;
+        if (layer == LAYER_I) {
+            frameLength = (12 * bitrate / sampleRate + padding) * 4;
+            samples = 384;
+        } else if (layer == LAYER_II || version == VERSION_MPEG1) {
+            frameLength = 144 * bitrate / sampleRate + padding;
+            samples = 1152;
+        } else { // layer III of MPEG-2 and MPEG-2.5
+            frameLength = 72 * bitrate / sampleRate + padding;
+            samples = 576;
+        }
+        if (frameLength < ID3V2_HEADER_LENGTH_BYTES) return false;
+
+        if (frames > 0) lostBytes += junk; // bytes before first frame are unknown headers
+        junk = 0;
+        streamSignature = signature;
+        frames++;
+        audioBytes += frameLength;
+        durationSeconds += (double) samples / sampleRate;
+        skip = frameLength - pendingLength;
+        pendingLength = 0;
+        return true;
+    }
+
+    /**
+     * Moves first pending byte to current run of junk.
+     */
+    private void dropJunkByte() {
+        if (junk < junkHead.length) junkHead[(int) junk] = pending[0];
+        junk++;
+        pendingLength--;
+        System.arraycopy(pending, 1, pending, 0, pendingLength);
+    }
+
+    /**
+     * Finishes validation at the end of track.
+     *
+     * @return Report about frames of track
+     */
+    public AudioReport finish() {
+        long missingBytes = skip;
+        long tail = junk + pendingLength;
+        boolean id3v1 = tail == Metadata.ID3V1_HEADER_LENGTH_BYTES
+                && (junk >= ID3V1_TAG.length ? startsWith(junkHead, junkHead.length, ID3V1_TAG)
+                : startsWith(pending, pendingLength, ID3V1_TAG));
+        long lost = lostBytes;
+        if (frames > 0 && missingBytes == 0 && !id3v1) {
+            if (junk == 0 && pendingLength > 0 && (pending[0] & 0xFF) == 0xFF) {
+                missingBytes = FRAME_HEADER_LENGTH_BYTES - pendingLength; // cut at header of next frame
+            } else {
+                lost += tail;
+            }
+        }
+        return new AudioReport(frames, audioBytes, durationSeconds, lost, missingBytes);
+    }
+
+    private static boolean startsWith(byte[] bytes, int length, byte[] prefix) {
+        for (int i = 0; i < Math.min(length, prefix.length); i++) {
+            if (bytes[i] != prefix[i]) return false;
+        }
+        return length > 0;
+    }
+
+    /**
+     * Decodes 4 bytes syncsafe integer: 7 significant bits per byte.
+     */
+    private static int syncsafe(byte[] bytes, int offset) {
+        int value = 0;
+        for (int i = offset; i < offset + 4; i++) {
+            value = (value << 7) | (bytes[i] & 0b0111_1111);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,101 @@
+package javacore.coop.cachemusic;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Catalog of file names at output folder.<br>
+ * Output folder is listed once, then unique names are reserved in memory: <code>name</code>,
+ * <code>name1</code>, <code>name2</code>... Numbers of a name only increase, so every reservation is one step,
+ * however many tracks have the name. Names are compared ignoring case, like Windows does.<br>
+ * Names may be reserved concurrently by several builders.
+ */
+public class OutputCatalog {
+    private final static Map<Path, OutputCatalog> CATALOGS = new ConcurrentHashMap<>();
+
+    private final Path folder;
+    private final Set<String> takenNames = ConcurrentHashMap.newKeySet();
+    private final Map<String, AtomicInteger> nextIndexes = new ConcurrentHashMap<>();
+
+    private OutputCatalog(Path folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * Returns catalog of output folder, shared by whole program.<br>
+     * Folder is listed when its catalog is requested first time.
+     *
+     * @param outputFolder Folder that contains tracks
+     * @return Catalog of folder
+     */
+    public static OutputCatalog of(Path outputFolder) {
+        return CATALOGS.computeIfAbsent(outputFolder.toAbsolutePath().normalize(), folder -> {
+            OutputCatalog catalog = new OutputCatalog(folder);
+            catalog.list();
+            return catalog;
+        });
+    }
+
+    /**
+     * Remembers names of all files of folder.
+     */
+    private void list() {
+        if (!Files.isDirectory(folder)) return;
+
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(folder)) {
+            for (Path file : directoryStream) {
+                takenNames.add(key(file.getFileName().toString()));
+            }
+        } catch (IOException e) {
+            System.err.println("Output folder can't be listed, names of tracks may be checked slowly.\n"
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * Reserves unique file name. Reserved name is never returned again, until it is released.
+     * Numbered names are not reused: after released <code>name2</code> next reservation is <code>name3</code>.
+     *
+     * @param fileName  Desired file name without extension
+     * @param extension Extension of file, e.g. <code>.mp3</code>
+     * @return <code>fileName</code>, if it is free, otherwise <code>fileName</code> with the next free number,
+     * greater than numbers reserved before
+     */
+    public String reserve(String fileName, String extension) {
+        if (takenNames.add(key(fileName + extension))) return fileName + extension;
+
+        AtomicInteger nextIndex = nextIndexes.computeIfAbsent(key(fileName), name -> new AtomicInteger(1));
+        while (true) {
+            String candidate = fileName + nextIndex.getAndIncrement() + extension;
+            if (takenNames.add(key(candidate))) return candidate;
+        }
+    }
+
+    /**
+     * Frees reserved name, that stays unused, e.g. because track turned out to be a duplicate.
+     *
+     * @param fileName Reserved file name with extension
+     */
+    public void release(String fileName) {
+        takenNames.remove(key(fileName));
+    }
+
+    /**
+     * Makes name key, that doesn't depend on case.
+     */
+    private static String key(String fileName) {
+        return fileName.toLowerCase(Locale.ROOT);
+    }
+
+    // GETTERS
+    public Path getFolder() {
+        return folder;
+    }
+}
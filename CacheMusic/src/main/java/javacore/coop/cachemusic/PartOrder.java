@@ -0,0 +1,164 @@
+package javacore.coop.cachemusic;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Part files of cache folder in true cache order.<br>
+ * Chrome names parts <code>f_XXXXXX</code>, where <code>XXXXXX</code> is hexadecimal number of part, that grows
+ * while media is cached. Numbers are parsed to primitive keys and radix-sorted, so order doesn't depend on
+ * file system and paths are not compared as strings. Files, which names have no such number, are not cache parts
+ * and are skipped.<br>
+ * Only keys are kept in memory: paths are made from numbers when they are requested.
+ */
+class PartOrder extends AbstractList<Path> {
+    private final static int MAX_NUMBER_DIGITS = 8;
+    private final static int NUMBER_DIGITS = 6;
+    private final static int RADIX_BITS = 8;
+    private final static int RADIX = 1 << RADIX_BITS;
+    private final static long SEQUENCE_MASK = 0xFFFF_FFFFL;
+
+    private final Path cacheFolder;
+    // Number of part at high 32 bits and sequence of listing at low 32 bits
+    private final long[] keys;
+    // Parts, which names can't be made from number (e.g. upper case digits), by sequence of listing
+    private final Map<Integer, Path> irregularParts;
+
+    private PartOrder(Path cacheFolder, long[] keys, Map<Integer, Path> irregularParts) {
+        this.cacheFolder = cacheFolder;
+        this.keys = keys;
+        this.irregularParts = irregularParts;
+    }
+
+    /**
+     * Lists part files of cache folder and sorts them in cache order.
+     *
+     * @param cacheFolder Path to cache folder
+     * @return Absolute paths to part files in cache order
+     * @throws IOException If cache folder can't be read
+     */
+    static PartOrder list(Path cacheFolder) throws IOException {
+        try (DirectoryStream<Path> directoryStream =
+                     Files.newDirectoryStream(cacheFolder, CacheReader.CACHE_FILE_NAME_PREFIX + "*")) {
+            return of(cacheFolder.toAbsolutePath(), directoryStream);
+        }
+    }
+
+    /**
+     * Sorts part files of one folder in cache order.
+     *
+     * @param cacheFolder Path to cache folder, that contains parts
+     * @param parts       Part files in any order
+     * @return Absolute paths to part files in cache order
+     */
+    static PartOrder of(Path cacheFolder, Iterable<Path> parts) {
+        Path folder = cacheFolder.toAbsolutePath();
+        long[] keys = new long[16];
+        Map<Integer, Path> irregularParts = new HashMap<>();
+        int count = 0;
+        for (Path part : parts) {
+            String fileName = part.getFileName().toString();
+            long number = parseNumber(fileName);
+            if (number < 0) continue;
+
+            if (count == keys.length) keys = Arrays.copyOf(keys, count * 2);
+            if (!fileName.equals(fileName(number))) irregularParts.put(count, folder.resolve(fileName));
+            keys[count] = number << 32 | count;
+            count++;
+        }
+
+        keys = Arrays.copyOf(keys, count);
+        sortByNumber(keys);
+        return new PartOrder(folder, keys, irregularParts);
+    }
+
+    /**
+     * Parses number of part from its file name.
+     *
+     * @param fileName File name of part, e.g. <code>f_00a3f1</code>
+     * @return Number of part or <code>-1</code> if file name has no number of part
+     */
+    static long parseNumber(String fileName) {
+        int prefixLength = CacheReader.CACHE_FILE_NAME_PREFIX.length();
+        int digits = fileName.length() - prefixLength;
+        if (digits < 1 || digits > MAX_NUMBER_DIGITS || !fileName.startsWith(CacheReader.CACHE_FILE_NAME_PREFIX)) {
+            return -1;
+        }
+
+        long number = 0;
+        for (int i = prefixLength; i < fileName.length(); i++) {
+            int digit = Character.digit(fileName.charAt(i), 16);
+            if (digit < 0) return -1;
+            number = number << 4 | digit;
+        }
+        return number;
+    }
+
+    /**
+     * Makes file name, that Chrome gives to part with number, e.g. <code>f_00a3f1</code>.
+     */
+    static String fileName(long number) {
+        String hex = Long.toHexString(number);
+        StringBuilder fileName = new StringBuilder(CacheReader.CACHE_FILE_NAME_PREFIX);
+        for (int i = hex.length(); i < NUMBER_DIGITS; i++) {
+            fileName.append('0');
+        }
+        return fileName.append(hex).toString();
+    }
+
+    /**
+     * Stable LSD radix sort of keys by their high 32 bits, one byte per pass.<br>
+     * Parts with the same number keep order of listing. Passes, where all keys have the same byte, are skipped.
+     */
+    private static void sortByNumber(long[] keys) {
+        long[] buffer = new long[keys.length];
+        long[] from = keys;
+        long[] to = buffer;
+        int[] counts = new int[RADIX];
+        for (int shift = 32; shift < 64; shift += RADIX_BITS) {
+            Arrays.fill(counts, 0);
+            for (long key : from) {
+                counts[(int) (key >>> shift) & (RADIX - 1)]++;
+            }
+            if (from.length == 0 || counts[(int) (from[0] >>> shift) & (RADIX - 1)] == from.length) continue;
+
+            for (int i = 0, position = 0; i < RADIX; i++) {
+                int count = counts[i];
+                counts[i] = position;
+                position += count;
+            }
+            for (long key : from) {
+                to[counts[(int) (key >>> shift) & (RADIX - 1)]++] = key;
+            }
+            long[] sorted = to;
+            to = from;
+            from = sorted;
+        }
+        if (from != keys) System.arraycopy(from, 0, keys, 0, keys.length);
+    }
+
+    /**
+     * @param index Position of part in cache order
+     * @return Absolute path to part file
+     */
+    @Override
+    public Path get(int index) {
+        long key = keys[index];
+        Path irregularPart = irregularParts.isEmpty() ? null : irregularParts.get((int) (key & SEQUENCE_MASK));
+        return irregularPart != null ? irregularPart : cacheFolder.resolve(fileName(key >>> 32));
+    }
+
+    /**
+     * @return Count of part files
+     */
+    @Override
+    public int size() {
+        return keys.length;
+    }
+}
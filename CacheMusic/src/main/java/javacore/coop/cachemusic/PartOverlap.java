@@ -0,0 +1,67 @@
+package javacore.coop.cachemusic;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Finds bytes, that are repeated at boundary of adjacent parts.<br>
+ * Range requests of Chrome may leave parts, which ranges overlap: the end of one part is repeated
+ * at the start of the next one. Overlap is the longest suffix of previous part, that is a prefix of the next one.
+ * Suffixes and prefixes of growing length are compared by Rabin-Karp rolling hashes, so whole boundary is checked
+ * in one pass, and only candidates with equal hashes are compared byte by byte.<br>
+ * Overlap must be at least {@link #MIN_OVERLAP_BYTES} long. Repeating content, e.g. frames of digital silence,
+ * matches at several lengths and can't be told from real audio, so it is never trimmed.
+ */
+class PartOverlap {
+    final static int MIN_OVERLAP_BYTES = 4 * 1024;
+
+    private final static long HASH_BASE = 0x100000001B3L; // odd, hashes are taken modulo 2^64
+
+    private PartOverlap() {
+    }
+
+    /**
+     * Searches for overlap of two adjacent parts.
+     *
+     * @param previous Content of previous part from 0 to limit
+     * @param next     Content of next part from 0 to limit
+     * @return Count of bytes at start of next part, that repeat the end of previous part, or <code>0</code>
+     */
+    static int find(ByteBuffer previous, ByteBuffer next) {
+        int previousLength = previous.limit();
+        int maxOverlap = Math.min(previousLength, next.limit());
+        if (maxOverlap < MIN_OVERLAP_BYTES) return 0;
+
+        int[] candidates = new int[16];
+        int candidatesCount = 0;
+        long suffixHash = 0;
+        long prefixHash = 0;
+        long power = 1; // HASH_BASE ^ (length - 1)
+        for (int length = 1; length <= maxOverlap; length++) {
+            suffixHash += (previous.get(previousLength - length) & 0xFF) * power;
+            prefixHash = prefixHash * HASH_BASE + (next.get(length - 1) & 0xFF);
+            power *= HASH_BASE;
+            if (length < MIN_OVERLAP_BYTES || suffixHash != prefixHash) continue;
+
+            if (candidatesCount == candidates.length) candidates = Arrays.copyOf(candidates, candidatesCount * 2);
+            candidates[candidatesCount++] = length;
+        }
+
+        int overlap = 0;
+        for (int i = candidatesCount - 1; i >= 0; i--) {
+            int length = candidates[i];
+            if (!matches(previous, previousLength - length, next, length)) continue; // hash collision
+
+            if (overlap != 0) return 0; // matches at two lengths: content repeats itself
+            overlap = length;
+        }
+        return overlap;
+    }
+
+    private static boolean matches(ByteBuffer previous, int previousStart, ByteBuffer next, int length) {
+        for (int i = 0; i < length; i++) {
+            if (previous.get(previousStart + i) != next.get(i)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,206 @@
+package javacore.coop.cachemusic;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Single-pass prober of cache parts.<br>
+ * Every part is opened once: its head and tail are read through a <code>FileChannel</code>
+ * and turned into a {@link CachePart} descriptor. Many parts are probed in parallel at received executor:
+ * <code>ForkJoinPool</code> splits them by recursive tasks, other executors get task for every part.
+ */
+public class PartScanner {
+    private final static int HEAD_PROBE_LENGTH_BYTES = Metadata.ID3V1_HEADER_LENGTH_BYTES;
+    private final static int TAIL_PROBE_LENGTH_BYTES = Metadata.ID3V1_HEADER_LENGTH_BYTES;
+    private final static int PARTS_PER_TASK = 64;
+
+    private PartScanner() {
+    }
+
+    /**
+     * Probes all parts in parallel.
+     *
+     * @param parts Paths to part files
+     * @return Descriptors in the same order as <code>parts</code>.<br>
+     * Parts that can't be read are presented as <code>null</code>.
+     */
+    public static CachePart[] probeAll(List<Path> parts) {
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            return probeAll(parts, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Probes all parts in parallel at received executor.
+     *
+     * @param parts    Paths to part files
+     * @param executor Executor to probe parts at
+     * @return Descriptors in the same order as <code>parts</code>.<br>
+     * Parts that can't be read are presented as <code>null</code>.
+     */
+    public static CachePart[] probeAll(List<Path> parts, ExecutorService executor) {
+        CachePart[] result = new CachePart[parts.size()];
+        if (executor instanceof ForkJoinPool) {
+            ((ForkJoinPool) executor).invoke(new ProbeTask(parts, result, 0, parts.size()));
+            return result;
+        }
+
+        List<Future<?>> probes = new ArrayList<>(parts.size());
+        for (int i = 0; i < parts.size(); i++) {
+            final int index = i;
+            probes.add(executor.submit(() -> probeQuietly(parts, result, index)));
+        }
+        boolean interrupted = false;
+        for (Future<?> probe : probes) {
+            while (true) {
+                try {
+                    probe.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true; // parts are still probed, result must be complete
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        return result;
+    }
+
+    /**
+     * Probes part and puts its descriptor to <code>result</code>. Part, that can't be read, is reported.
+     */
+    private static void probeQuietly(List<Path> parts, CachePart[] result, int index) {
+        Path part = parts.get(index);
+        try {
+            result[index] = probe(part);
+        } catch (IOException e) {
+            System.err.println("Can't read cache part " + part + "\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads part's head and tail once and parses found metadata.<br>
+     * Descriptor is put to {@link MetadataCache#shared()}.
+     *
+     * @param part Path to part file
+     * @return Descriptor of part
+     * @throws IOException If part can't be read
+     */
+    public static CachePart probe(Path part) throws IOException {
+        HarvestMetrics metrics = HarvestMetrics.shared();
+        long started = System.nanoTime();
+        // probe needs only head and tail: part buffer of pool would hold 1 MB for 256 bytes
+        ByteBuffer buffer = ByteBuffer.allocate(HEAD_PROBE_LENGTH_BYTES + TAIL_PROBE_LENGTH_BYTES);
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            buffer.limit(HEAD_PROBE_LENGTH_BYTES);
+            Metadata.readFully(channel, 0, buffer);
+            buffer.flip();
+            ByteBuffer head = buffer.slice();
+
+            ByteBuffer tail;
+            if (size <= HEAD_PROBE_LENGTH_BYTES) { // whole file is already read
+                tail = head;
+            } else {
+                buffer.limit(HEAD_PROBE_LENGTH_BYTES + TAIL_PROBE_LENGTH_BYTES).position(HEAD_PROBE_LENGTH_BYTES);
+                Metadata.readFully(channel, size - TAIL_PROBE_LENGTH_BYTES, buffer);
+                buffer.flip().position(HEAD_PROBE_LENGTH_BYTES);
+                tail = buffer.slice();
+            }
+
+            Metadata.FormatName formatAtStart = Metadata.detectFormatAtStart(head);
+            Metadata.FormatName formatAtEnd = Metadata.detectFormatAtEnd(tail);
+            long detected = System.nanoTime();
+            metrics.record(HarvestMetrics.Phase.DETECTION, detected - started);
+
+            Metadata metadata = null;
+            switch (formatAtStart) {
+                case ID3v1:
+                    metadata = readID3v1(head, tail);
+                    break;
+                case ID3v23:
+                    metadata = readID3v2(channel, head);
+                    break;
+                default:
+                    break;
+            }
+            if (metadata == null && formatAtEnd == Metadata.FormatName.ID3v1) {
+                metadata = readID3v1(head, tail);
+            }
+            metrics.record(HarvestMetrics.Phase.TAG_PARSE, System.nanoTime() - detected);
+
+            long lastModified = Files.getLastModifiedTime(part).toMillis();
+            CachePart probed = new CachePart(part, size, lastModified, formatAtStart, formatAtEnd, metadata);
+            MetadataCache.shared().put(probed);
+            return probed;
+        }
+    }
+
+    /**
+     * Parses ID3v1 tag at start of part and, if not found, at end of part.
+     */
+    private static Metadata readID3v1(ByteBuffer head, ByteBuffer tail) {
+        if (Metadata.isID3v1(head)) {
+            return Metadata.parseID3v1(head);
+        }
+        if (tail.remaining() == Metadata.ID3V1_HEADER_LENGTH_BYTES && Metadata.isID3v1(tail)) {
+            return Metadata.parseID3v1(tail);
+        }
+        return null;
+    }
+
+    /**
+     * Parses ID3v2 tag at start of part through lazy frame index, starting from already read head.
+     */
+    private static Metadata readID3v2(FileChannel channel, ByteBuffer head) throws IOException {
+        ID3v2FrameIndex index = ID3v2FrameIndex.open(channel, head);
+        return index == null ? null : Metadata.readID3v2(index);
+    }
+
+    /**
+     * Probes range of parts, splitting it while it is bigger than {@link #PARTS_PER_TASK}.
+     */
+    private static class ProbeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Path> parts;
+        private final CachePart[] result;
+        private final int from;
+        private final int to;
+
+        ProbeTask(List<Path> parts, CachePart[] result, int from, int to) {
+            this.parts = parts;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARTS_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    probeQuietly(parts, result, i);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ProbeTask(parts, result, from, middle), new ProbeTask(parts, result, middle, to));
+            }
+        }
+    }
+}
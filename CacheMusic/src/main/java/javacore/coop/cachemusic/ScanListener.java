@@ -0,0 +1,30 @@
+package javacore.coop.cachemusic;
+
+/**
+ * Receives results of cache folder scanning as soon as they are ready.
+ */
+public interface ScanListener {
+    /**
+     * Called once, when cache folder was listed.
+     *
+     * @param parts Count of found part files
+     */
+    default void onListed(int parts) {
+    }
+
+    /**
+     * Called after every probed batch of parts.
+     *
+     * @param parts Count of parts probed in batch
+     */
+    default void onProbed(int parts) {
+    }
+
+    /**
+     * Called for every song, as soon as all its parts are found.
+     *
+     * @param song Parts of song in cache order
+     * @throws InterruptedException If listener was interrupted while waiting for accepting song
+     */
+    void onSong(SongGroup song) throws InterruptedException;
+}
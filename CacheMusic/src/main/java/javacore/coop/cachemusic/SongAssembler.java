@@ -0,0 +1,186 @@
+package javacore.coop.cachemusic;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Assembles found songs to output folder and remembers them at harvest manifest.<br>
+ * Songs may be assembled to {@link TrackArchive} instead: archive is a batch export of the whole cache,
+ * so manifest is used only to restore probed parts, and archived songs are not remembered at it.<br>
+ * Can be used by several threads at the same time.
+ */
+public class SongAssembler {
+    private final Path outputFolder;
+    private final HarvestManifest manifest;
+    private final TrackIndex index;
+    private final TrackArchive archive;
+    private final TrackFilter filter;
+    private final HarvestReport report;
+
+    // STATISTICS
+    private final AtomicInteger songsAssembled = new AtomicInteger();
+    private final AtomicInteger songsSkipped = new AtomicInteger();
+    private final AtomicInteger songsDuplicated = new AtomicInteger();
+    private final AtomicInteger songsFiltered = new AtomicInteger();
+    private final AtomicLong filesAnalysed = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    /**
+     * Makes assembler, that drops duplicates of tracks from {@link TrackIndex} of output folder.
+     *
+     * @param outputFolder Folder that will contain found songs
+     * @param manifest     Manifest of previous harvest
+     */
+    public SongAssembler(Path outputFolder, HarvestManifest manifest) {
+        this(outputFolder, manifest, TrackIndex.load(outputFolder));
+    }
+
+    /**
+     * Makes assembler and deletes tracks, that were left incomplete by interrupted harvest.
+     *
+     * @param outputFolder Folder that will contain found songs
+     * @param manifest     Manifest of previous harvest
+     * @param index        Content hashes of tracks at output folder
+     */
+    public SongAssembler(Path outputFolder, HarvestManifest manifest, TrackIndex index) {
+        this(outputFolder, manifest, index, TrackFilter.ALL);
+    }
+
+    /**
+     * Makes assembler of songs, that are accepted by filter,
+     * and deletes tracks, that were left incomplete by interrupted harvest.
+     *
+     * @param outputFolder Folder that will contain found songs
+     * @param manifest     Manifest of previous harvest
+     * @param index        Content hashes of tracks at output folder
+     * @param filter       Filter of songs by metadata
+     */
+    public SongAssembler(Path outputFolder, HarvestManifest manifest, TrackIndex index, TrackFilter filter) {
+        this(outputFolder, manifest, index, null, filter);
+    }
+
+    /**
+     * Makes assembler of songs, that are accepted by filter, to archive.
+     *
+     * @param outputFolder Folder for harvest report
+     * @param manifest     Manifest of previous harvest
+     * @param archive      Archive, that receives tracks. It is not closed by assembler.
+     * @param filter       Filter of songs by metadata
+     */
+    public SongAssembler(Path outputFolder, HarvestManifest manifest, TrackArchive archive, TrackFilter filter) {
+        this(outputFolder, manifest, null, archive, filter);
+    }
+
+    private SongAssembler(Path outputFolder, HarvestManifest manifest, TrackIndex index, TrackArchive archive,
+                          TrackFilter filter) {
+        this.outputFolder = outputFolder;
+        this.manifest = manifest;
+        this.index = index;
+        this.archive = archive;
+        this.filter = filter;
+        this.report = new HarvestReport(outputFolder);
+        FileBuilder.deleteIncompleteTracks(outputFolder);
+    }
+
+    /**
+     * Assembles song, if it wasn't harvested before, and remembers its track at manifest.<br>
+     * Song with the same content as existing track is not written and is remembered as that track.
+     * Song, that isn't accepted by filter, is neither read nor written, and is remembered as not assembled.
+     *
+     * @param song Parts of song
+     * @return Result of assembly or <code>null</code> if song was harvested before, filtered or can't be assembled
+     */
+    public BuildResult assemble(SongGroup song) {
+        if (archive == null && harvestedTrack(manifest, song) != null) {
+            songsSkipped.incrementAndGet();
+            return null;
+        }
+        if (!filter.accepts(song)) {
+            songsFiltered.incrementAndGet();
+            if (archive == null) manifest.record(song, null);
+            return null;
+        }
+
+        long started = System.nanoTime();
+        String fileName = song.getSongName();
+        BuildResult result = null;
+        try {
+            String trackName = fileName == null ? FileBuilder.DEFAULT_SONG_NAME : fileName;
+            result = archive == null
+                    ? FileBuilder.assemble(song.getPaths(), outputFolder, trackName, index)
+                    : archive.add(song.getPaths(), trackName);
+            HarvestMetrics.shared().record(HarvestMetrics.Phase.ASSEMBLY, System.nanoTime() - started);
+            HarvestMetrics.shared().addBytesWritten(result.getBytesWritten());
+            report.record(song.size(), result);
+            if (result.isDuplicate()) {
+                songsDuplicated.incrementAndGet();
+            } else {
+                songsAssembled.incrementAndGet();
+                HarvestMetrics.shared().addSongsAssembled(1);
+            }
+            filesAnalysed.addAndGet(song.size());
+            bytesWritten.addAndGet(result.getBytesWritten());
+        } catch (IOException e) {
+            System.err.format("An error occurred while creating %s song from parts!\nError: %s\n",
+                    fileName == null ? "unknown" : fileName,
+                    e.getMessage());
+        }
+
+        if (archive == null) {
+            String track = result == null ? null : result.getTrack().getFileName().toString();
+            manifest.record(song, track);
+        }
+        return result;
+    }
+
+    /**
+     * Searches for track, that whole song was assembled into at previous harvest.
+     *
+     * @param manifest Manifest of previous harvest
+     * @param song     Parts of song
+     * @return File name of track or <code>null</code> if song must be assembled
+     */
+    static String harvestedTrack(HarvestManifest manifest, SongGroup song) {
+        String track = manifest.getTrack(song.getParts().get(0));
+        if (track == null) return null;
+        for (CachePart part : song.getParts()) {
+            if (!track.equals(manifest.getTrack(part))) return null;
+        }
+        return track;
+    }
+
+    // GETTERS
+    public HarvestManifest getManifest() {
+        return manifest;
+    }
+
+    public HarvestReport getReport() {
+        return report;
+    }
+
+    public int getSongsAssembled() {
+        return songsAssembled.get();
+    }
+
+    public int getSongsSkipped() {
+        return songsSkipped.get();
+    }
+
+    public int getSongsDuplicated() {
+        return songsDuplicated.get();
+    }
+
+    public int getSongsFiltered() {
+        return songsFiltered.get();
+    }
+
+    public long getFilesAnalysed() {
+        return filesAnalysed.get();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+}
@@ -0,0 +1,82 @@
+package javacore.coop.cachemusic;
+
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parts of one song in cache order, found by scanning of cache folder.<br>
+ * Keeps only compact descriptors of parts, paths are not converted to strings.
+ */
+public class SongGroup {
+    private final List<CachePart> parts;
+    private final String songName;
+
+    /**
+     * @param parts Descriptors of song's parts in cache order, not empty
+     */
+    SongGroup(List<CachePart> parts) {
+        this.parts = Collections.unmodifiableList(parts);
+        this.songName = findSongName(parts);
+    }
+
+    /**
+     * Searches at song's parts for name in MP3 metadata.
+     *
+     * @return First found name of song or <code>null</code> if not found
+     */
+    private static String findSongName(List<CachePart> parts) {
+        for (CachePart part : parts) {
+            if (part.getSongName() != null) return part.getSongName();
+        }
+        return null;
+    }
+
+    // GETTERS
+    public List<CachePart> getParts() {
+        return parts;
+    }
+
+    /**
+     * @return Absolute paths to part files. List is a view of descriptors, nothing is copied.
+     */
+    public List<Path> getPaths() {
+        return new AbstractList<Path>() {
+            @Override
+            public Path get(int index) {
+                return parts.get(index).getPath();
+            }
+
+            @Override
+            public int size() {
+                return parts.size();
+            }
+        };
+    }
+
+    /**
+     * @return First found name of song or <code>null</code> if parts have no metadata with name
+     */
+    public String getSongName() {
+        return songName;
+    }
+
+    /**
+     * @return Count of parts
+     */
+    public int size() {
+        return parts.size();
+    }
+
+    /**
+     * @return Total size of parts in bytes
+     */
+    public long getBytes() {
+        long bytes = 0;
+        for (CachePart part : parts) {
+            bytes += part.getSize();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,60 @@
+package javacore.coop.cachemusic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Groups parts, received in cache order, to songs.<br>
+ * New song starts at part with metadata, that has another song name than the current song.
+ */
+class SongGrouper {
+    private final long maxPartSize;
+    private List<CachePart> songParts = new ArrayList<>();
+    private String lastFoundSongName = null;
+
+    /**
+     * @param maxPartSize Parts bigger than this size are not cache parts of song and are skipped
+     */
+    SongGrouper(long maxPartSize) {
+        this.maxPartSize = maxPartSize;
+    }
+
+    /**
+     * Adds next part to current song.
+     *
+     * @param part Descriptor of part or <code>null</code> if part can't be read
+     * @return Previous song, if it was closed by this part, otherwise <code>null</code>
+     */
+    SongGroup add(CachePart part) {
+        if (part == null || part.getSize() > maxPartSize) return null;
+
+        SongGroup closedSong = null;
+        if (part.hasMetadata() && songParts.size() > 0) { // new .mp3 file
+            if (lastFoundSongName == null || !lastFoundSongName.equals(part.getSongName())) {
+                closedSong = new SongGroup(songParts); // save prev list of parts
+                songParts = new ArrayList<>(); // and create new list of parts
+                lastFoundSongName = null;
+            }
+        }
+        songParts.add(part);
+        if (lastFoundSongName == null) {
+            lastFoundSongName = part.getSongName();
+        }
+
+        return closedSong;
+    }
+
+    /**
+     * Closes current song.
+     *
+     * @return Last song or <code>null</code> if there are no parts left
+     */
+    SongGroup finish() {
+        if (songParts.isEmpty()) return null;
+
+        SongGroup lastSong = new SongGroup(songParts); // if last read part was separate song
+        songParts = new ArrayList<>();
+        lastFoundSongName = null;
+        return lastSong;
+    }
+}
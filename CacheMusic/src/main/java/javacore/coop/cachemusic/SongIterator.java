@@ -0,0 +1,137 @@
+package javacore.coop.cachemusic;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Lazy grouping of cache parts to songs.<br>
+ * Parts are taken from source by batches only when next song is requested, so memory holds
+ * one batch of parts and songs closed by it, not the whole cache folder.
+ * Parts, that are known to manifest and weren't changed since previous harvest, are not probed again.
+ */
+class SongIterator implements Iterator<SongGroup>, Closeable {
+    private final static int PROBE_BATCH_SIZE = 512;
+
+    private final Iterator<Path> partPaths;
+    private final HarvestManifest manifest;
+    private final ScanListener listener;
+    private final SongGrouper grouper = new SongGrouper(CacheReader.CACHE_PART_SIZE_IN_BYTES);
+    private final Queue<SongGroup> songs = new ArrayDeque<>();
+    private final ExecutorService probers;
+    private final boolean ownProbers;
+    private boolean finished = false;
+
+    /**
+     * Makes iterator, that probes parts at its own <code>ForkJoinPool</code>.
+     *
+     * @param partPaths Paths to part files in cache order
+     * @param manifest  Manifest of previous harvest or <code>null</code> to probe every part
+     * @param listener  Receiver of probing progress or <code>null</code>
+     */
+    SongIterator(Iterator<Path> partPaths, HarvestManifest manifest, ScanListener listener) {
+        this(partPaths, manifest, listener, new ForkJoinPool(), true);
+    }
+
+    /**
+     * @param partPaths Paths to part files in cache order
+     * @param manifest  Manifest of previous harvest or <code>null</code> to probe every part
+     * @param listener  Receiver of probing progress or <code>null</code>
+     * @param probers   Executor to probe parts at. It is not shut down by iterator.
+     */
+    SongIterator(Iterator<Path> partPaths, HarvestManifest manifest, ScanListener listener, ExecutorService probers) {
+        this(partPaths, manifest, listener, probers, false);
+    }
+
+    private SongIterator(Iterator<Path> partPaths, HarvestManifest manifest, ScanListener listener,
+                         ExecutorService probers, boolean ownProbers) {
+        this.partPaths = partPaths;
+        this.manifest = manifest;
+        this.listener = listener;
+        this.probers = probers;
+        this.ownProbers = ownProbers;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (songs.isEmpty() && !finished) {
+            groupNextBatch();
+        }
+        return !songs.isEmpty();
+    }
+
+    @Override
+    public SongGroup next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return songs.poll();
+    }
+
+    /**
+     * Probes next batch of parts and groups them. Closes last song, when there are no parts left.
+     */
+    private void groupNextBatch() {
+        List<Path> batch = new ArrayList<>(PROBE_BATCH_SIZE);
+        while (batch.size() < PROBE_BATCH_SIZE && partPaths.hasNext()) {
+            batch.add(partPaths.next().toAbsolutePath());
+        }
+        if (batch.isEmpty()) {
+            SongGroup lastSong = grouper.finish();
+            if (lastSong != null) songs.add(lastSong);
+            close();
+            return;
+        }
+
+        HarvestMetrics metrics = HarvestMetrics.shared();
+        CachePart[] parts = new CachePart[batch.size()];
+        List<Path> changedPaths = new ArrayList<>();
+        List<Integer> changedIndexes = new ArrayList<>();
+        for (int i = 0; i < parts.length; i++) {
+            Path partPath = batch.get(i);
+            if (manifest != null) {
+                try {
+                    parts[i] = manifest.restore(partPath, Files.readAttributes(partPath, BasicFileAttributes.class));
+                } catch (IOException e) {
+                    // part was evicted after listing or can't be read: it is left to probing, that skips it
+                }
+            }
+            if (parts[i] == null) {
+                changedPaths.add(partPath);
+                changedIndexes.add(i);
+            }
+        }
+
+        metrics.addPartsRestored(parts.length - changedPaths.size());
+        metrics.addPartsProbed(changedPaths.size());
+        CachePart[] probed = PartScanner.probeAll(changedPaths, probers);
+        for (int i = 0; i < probed.length; i++) {
+            parts[changedIndexes.get(i)] = probed[i];
+        }
+        if (listener != null) listener.onProbed(parts.length);
+
+        long groupingStarted = System.nanoTime();
+        for (CachePart part : parts) {
+            SongGroup song = grouper.add(part);
+            if (song != null) songs.add(song);
+        }
+        metrics.record(HarvestMetrics.Phase.GROUPING, System.nanoTime() - groupingStarted);
+    }
+
+    /**
+     * Stops probing. Songs, that weren't closed yet, are dropped.
+     */
+    @Override
+    public void close() {
+        finished = true;
+        if (ownProbers) probers.shutdown();
+    }
+}
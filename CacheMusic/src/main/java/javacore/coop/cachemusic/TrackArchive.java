@@ -0,0 +1,461 @@
+package javacore.coop.cachemusic;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Single archive, that receives assembled tracks instead of output folder.<br>
+ * Tracks are appended to one file: ZIP with stored (uncompressed) entries, which central directory is written
+ * when archive is closed, or tar. So harvest creates one file instead of a file per track.<br>
+ * Parts of every track are read once and written right after entry header. Size and CRC of entry are known
+ * only after that, so header is written with blank fields and is completed in place from the written bytes.
+ * Tracks with the same content are written once: entry of duplicate is cut off the end of archive.
+ * Bytes, that repeat the end of previous part, are not written. Tracks are written one by one.<br>
+ * Archive is written to hidden temporary file and appears only when it is closed.
+ */
+public class TrackArchive implements Closeable {
+    /**
+     * Container format of archive
+     */
+    public enum Format {
+        ZIP, TAR;
+
+        /**
+         * @param file Archive file
+         * @return {@link #TAR} for <code>.tar</code> files, otherwise {@link #ZIP}
+         */
+        public static Format of(Path file) {
+            return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(TAR_EXTENSION) ? TAR : ZIP;
+        }
+    }
+
+    private final static String TAR_EXTENSION = ".tar";
+    private final static String MP3 = ".mp3";
+    private final static String TEMP_PREFIX = ".";
+    private final static String TEMP_SUFFIX = ".part";
+
+    private final static int TAR_BLOCK_SIZE = 512;
+    private final static int TAR_NAME_LENGTH = 100;
+    private final static String TAR_LONG_NAME = "././@LongLink";
+    private final static byte TAR_TYPE_FILE = '0';
+    private final static byte TAR_TYPE_LONG_NAME = 'L';
+    private final static String TAR_FILE_MODE = "0000644";
+    private final static String TAR_OWNER = "0000000";
+
+    private final static int ZIP_LOCAL_HEADER = 0x04034b50;
+    private final static int ZIP_CENTRAL_HEADER = 0x02014b50;
+    private final static int ZIP_END = 0x06054b50;
+    private final static int ZIP64_END = 0x06064b50;
+    private final static int ZIP64_END_LOCATOR = 0x07064b50;
+    private final static int ZIP_LOCAL_HEADER_LENGTH = 30;
+    private final static int ZIP_CENTRAL_HEADER_LENGTH = 46;
+    private final static int ZIP_END_LENGTH = 22;
+    private final static int ZIP64_END_LENGTH = 56;
+    private final static int ZIP64_END_LOCATOR_LENGTH = 20;
+    private final static int ZIP_CRC_OFFSET = 14; // CRC and both sizes at local header
+    private final static short ZIP_VERSION = 20;
+    private final static short ZIP64_VERSION = 45;
+    private final static short ZIP_UTF8_NAME = 0x0800;
+    private final static short ZIP_STORED = 0;
+    private final static short ZIP64_EXTRA = 0x0001;
+    private final static int ZIP64_EXTRA_LENGTH = 12;
+    private final static long ZIP_MAX_VALUE = 0xFFFFFFFFL; // greater values are stored at ZIP64 fields
+    private final static int ZIP_MAX_ENTRIES = 0xFFFF;
+
+    private final Path file;
+    private final Path temp;
+    private final Format format;
+    private final FileChannel channel;
+    private final Set<String> entryNames = new HashSet<>();
+    private final Map<String, String> entries = new HashMap<>(); // content hash - entry name
+    private final List<ZipRecord> zipRecords = new ArrayList<>();
+    private boolean closed = false;
+
+    /**
+     * Written ZIP entry, that is listed at central directory.
+     */
+    private static class ZipRecord {
+        private final byte[] name;
+        private final int dosTime;
+        private final long offset;
+        private final long crc;
+        private final long size;
+
+        private ZipRecord(byte[] name, int dosTime, long offset, long crc, long size) {
+            this.name = name;
+            this.dosTime = dosTime;
+            this.offset = offset;
+            this.crc = crc;
+            this.size = size;
+        }
+    }
+
+    private TrackArchive(Path file) throws IOException {
+        Path absoluteFile = file.toAbsolutePath();
+        this.file = absoluteFile;
+        this.temp = absoluteFile.resolveSibling(TEMP_PREFIX + absoluteFile.getFileName() + TEMP_SUFFIX);
+        this.format = Format.of(absoluteFile);
+        Files.createDirectories(absoluteFile.getParent());
+        this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Starts new archive. Format is chosen by extension of file, see {@link Format#of(Path)}.
+     *
+     * @param file Archive file. Existing file is replaced, when archive is closed.
+     * @return Empty archive
+     * @throws IOException If archive can't be created
+     */
+    public static TrackArchive create(Path file) throws IOException {
+        return new TrackArchive(file);
+    }
+
+    /**
+     * Collects track parts to archive entry, if archive has no track with the same content.
+     * Parts, that can't be read, are skipped.
+     *
+     * @param parts    track parts
+     * @param fileName name of track without extension
+     * @return result of assembly. Track is path of entry inside archive file.
+     * If song is duplicate - result points to existing entry.
+     * @throws IOException If archive can't be written or no part of track can be read
+     */
+    public synchronized BuildResult add(List<Path> parts, String fileName) throws IOException {
+        if (closed) throw new IOException("Archive is closed: " + file);
+
+        long started = System.nanoTime();
+        String entryName = reserve(fileName);
+        byte[] name = entryName.getBytes(StandardCharsets.UTF_8);
+        long entryStart = channel.position();
+        MpegFrameScanner audio = new MpegFrameScanner();
+        CRC32 crc = new CRC32();
+        int dosTime = dosTime(LocalDateTime.now());
+        TrackContent content;
+        try {
+            content = format == Format.ZIP
+                    ? writeZipEntry(name, dosTime, parts, audio, crc)
+                    : writeTarEntry(name, parts, audio);
+        } catch (IOException e) {
+            drop(entryName, entryStart);
+            throw e;
+        }
+
+        String hash = content.getHash();
+        if (hash == null) {
+            drop(entryName, entryStart);
+            throw new IOException("No part of track can be read: " + entryName);
+        }
+        String existing = entries.get(hash);
+        if (existing != null) {
+            drop(entryName, entryStart);
+            return new BuildResult(file.resolve(existing), 0, System.nanoTime() - started, true, audio.finish());
+        }
+
+        if (format == Format.ZIP) {
+            zipRecords.add(new ZipRecord(name, dosTime, entryStart, crc.getValue(), content.getSize()));
+        }
+        entries.put(hash, entryName);
+        return new BuildResult(file.resolve(entryName), content.getSize(), System.nanoTime() - started, false,
+                audio.finish());
+    }
+
+    /**
+     * Reserves unique entry name. Names are compared regardless of case, as at {@link OutputCatalog}.
+     */
+    private String reserve(String fileName) {
+        String entryName = fileName + MP3;
+        for (int index = 1; !entryNames.add(entryName.toLowerCase(Locale.ROOT)); index++) {
+            entryName = fileName + index + MP3;
+        }
+        return entryName;
+    }
+
+    /**
+     * Cuts entry, that mustn't stay at archive, off the end of archive and frees its name.
+     */
+    private void drop(String entryName, long entryStart) throws IOException {
+        entryNames.remove(entryName.toLowerCase(Locale.ROOT));
+        channel.truncate(entryStart);
+        channel.position(entryStart);
+    }
+
+    /**
+     * Writes local header of ZIP entry and track after it, then completes header with CRC and size of track.
+     */
+    private TrackContent writeZipEntry(byte[] name, int dosTime, List<Path> parts, MpegFrameScanner audio,
+                                       CRC32 crc) throws IOException {
+        long headerStart = channel.position();
+        ByteBuffer header = littleEndian(ZIP_LOCAL_HEADER_LENGTH + name.length);
+        header.putInt(ZIP_LOCAL_HEADER);
+        header.putShort(ZIP_VERSION);
+        header.putShort(ZIP_UTF8_NAME);
+        header.putShort(ZIP_STORED);
+        header.putInt(dosTime);
+        header.putInt(0); // CRC
+        header.putInt(0); // compressed size
+        header.putInt(0); // size
+        header.putShort((short) name.length);
+        header.putShort((short) 0); // extra field
+        header.put(name);
+        header.flip();
+        writeFully(header);
+
+        TrackContent content = TrackContent.copy(parts, audio, crc, channel);
+        long size = content.getSize();
+        if (size >= ZIP_MAX_VALUE) throw new IOException("Track is too big for ZIP entry: " + size + " bytes");
+
+        ByteBuffer fields = littleEndian(12);
+        fields.putInt((int) crc.getValue());
+        fields.putInt((int) size);
+        fields.putInt((int) size);
+        fields.flip();
+        writeFully(fields, headerStart + ZIP_CRC_OFFSET);
+        return content;
+    }
+
+    /**
+     * Writes ZIP central directory and end record.
+     * ZIP64 records are added, if offsets or count of entries don't fit fields of ZIP.
+     */
+    private void writeZipDirectory() throws IOException {
+        long directoryStart = channel.position();
+        for (ZipRecord record : zipRecords) {
+            boolean zip64 = record.offset >= ZIP_MAX_VALUE;
+            int extraLength = zip64 ? ZIP64_EXTRA_LENGTH : 0;
+            ByteBuffer header = littleEndian(ZIP_CENTRAL_HEADER_LENGTH + record.name.length + extraLength);
+            header.putInt(ZIP_CENTRAL_HEADER);
+            header.putShort(zip64 ? ZIP64_VERSION : ZIP_VERSION); // made by
+            header.putShort(zip64 ? ZIP64_VERSION : ZIP_VERSION); // needed to extract
+            header.putShort(ZIP_UTF8_NAME);
+            header.putShort(ZIP_STORED);
+            header.putInt(record.dosTime);
+            header.putInt((int) record.crc);
+            header.putInt((int) record.size);
+            header.putInt((int) record.size);
+            header.putShort((short) record.name.length);
+            header.putShort((short) extraLength);
+            header.putShort((short) 0); // comment
+            header.putShort((short) 0); // disk
+            header.putShort((short) 0); // internal attributes
+            header.putInt(0); // external attributes
+            header.putInt((int) Math.min(record.offset, ZIP_MAX_VALUE));
+            header.put(record.name);
+            if (zip64) {
+                header.putShort(ZIP64_EXTRA);
+                header.putShort((short) (ZIP64_EXTRA_LENGTH - 4));
+                header.putLong(record.offset);
+            }
+            header.flip();
+            writeFully(header);
+        }
+        long directoryEnd = channel.position();
+        long directorySize = directoryEnd - directoryStart;
+        int count = zipRecords.size();
+
+        if (count >= ZIP_MAX_ENTRIES || directoryStart >= ZIP_MAX_VALUE || directorySize >= ZIP_MAX_VALUE) {
+            ByteBuffer end = littleEndian(ZIP64_END_LENGTH + ZIP64_END_LOCATOR_LENGTH);
+            end.putInt(ZIP64_END);
+            end.putLong(ZIP64_END_LENGTH - 12); // size of rest of record
+            end.putShort(ZIP64_VERSION);
+            end.putShort(ZIP64_VERSION);
+            end.putInt(0); // disk
+            end.putInt(0); // disk of central directory
+            end.putLong(count);
+            end.putLong(count);
+            end.putLong(directorySize);
+            end.putLong(directoryStart);
+            end.putInt(ZIP64_END_LOCATOR);
+            end.putInt(0); // disk of ZIP64 end record
+            end.putLong(directoryEnd);
+            end.putInt(1); // count of disks
+            end.flip();
+            writeFully(end);
+        }
+
+        ByteBuffer end = littleEndian(ZIP_END_LENGTH);
+        end.putInt(ZIP_END);
+        end.putShort((short) 0); // disk
+        end.putShort((short) 0); // disk of central directory
+        end.putShort((short) Math.min(count, ZIP_MAX_ENTRIES));
+        end.putShort((short) Math.min(count, ZIP_MAX_ENTRIES));
+        end.putInt((int) Math.min(directorySize, ZIP_MAX_VALUE));
+        end.putInt((int) Math.min(directoryStart, ZIP_MAX_VALUE));
+        end.putShort((short) 0); // comment
+        end.flip();
+        writeFully(end);
+    }
+
+    private static ByteBuffer littleEndian(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Packs time to MS-DOS format of ZIP: date at high 16 bits, time with 2 seconds precision at low ones.
+     *
+     * @param time Local time, years before 1980 are written as 1980
+     * @return Packed date and time
+     */
+    static int dosTime(LocalDateTime time) {
+        int year = Math.max(time.getYear(), 1980);
+        int date = (year - 1980) << 9 | time.getMonthValue() << 5 | time.getDayOfMonth();
+        return date << 16 | time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() / 2;
+    }
+
+    /**
+     * Writes tar header and track after it, then completes header with size of track and pads track to block.
+     */
+    private TrackContent writeTarEntry(byte[] name, List<Path> parts, MpegFrameScanner audio) throws IOException {
+        if (name.length > TAR_NAME_LENGTH) { // GNU extension: long name is entry of its own
+            writeFully(tarHeader(TAR_LONG_NAME.getBytes(StandardCharsets.US_ASCII), name.length + 1,
+                    TAR_TYPE_LONG_NAME));
+            ByteBuffer longName = ByteBuffer.allocate((int) padded(name.length + 1));
+            longName.put(name);
+            longName.clear();
+            writeFully(longName);
+        }
+        long headerStart = channel.position();
+        writeFully(tarHeader(name, 0, TAR_TYPE_FILE));
+
+        TrackContent content = TrackContent.copy(parts, audio, null, channel);
+        long size = content.getSize();
+        writeFully(ByteBuffer.allocate((int) (padded(size) - size)));
+        writeFully(tarHeader(name, size, TAR_TYPE_FILE), headerStart);
+        return content;
+    }
+
+    /**
+     * Makes ustar header block.
+     */
+    private static ByteBuffer tarHeader(byte[] name, long size, byte type) {
+        byte[] header = new byte[TAR_BLOCK_SIZE];
+        System.arraycopy(name, 0, header, 0, Math.min(name.length, TAR_NAME_LENGTH));
+        putField(header, 100, TAR_FILE_MODE);
+        putField(header, 108, TAR_OWNER);
+        putField(header, 116, TAR_OWNER);
+        putField(header, 124, octal(size, 11));
+        putField(header, 136, octal(System.currentTimeMillis() / 1000, 11));
+        header[156] = type;
+        putField(header, 257, "ustar");
+        putField(header, 263, "00");
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' '; // checksum is calculated with blank checksum field
+        }
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        putField(header, 148, octal(checksum, 6)); // terminated by zero and followed by space
+        return ByteBuffer.wrap(header);
+    }
+
+    private static void putField(byte[] header, int offset, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+        header[offset + bytes.length] = 0;
+    }
+
+    private static String octal(long value, int digits) {
+        StringBuilder octal = new StringBuilder(Long.toOctalString(value));
+        while (octal.length() < digits) {
+            octal.insert(0, '0');
+        }
+        return octal.toString();
+    }
+
+    private static long padded(long size) {
+        return (size + TAR_BLOCK_SIZE - 1) / TAR_BLOCK_SIZE * TAR_BLOCK_SIZE;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Writes buffer at absolute position of archive, e.g. over header, that was written before.
+     */
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Finishes archive and moves it in place of archive file.
+     *
+     * @throws IOException If archive can't be finished
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+
+        closed = true;
+        try {
+            if (format == Format.ZIP) {
+                writeZipDirectory();
+            } else {
+                writeFully(ByteBuffer.allocate(2 * TAR_BLOCK_SIZE)); // end of archive
+            }
+            channel.close();
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            channel.close();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Drops unfinished archive. Archive file is not changed.
+     */
+    public synchronized void discard() {
+        if (closed) return;
+
+        closed = true;
+        try {
+            channel.close();
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            System.err.println("Unfinished archive can't be deleted: " + temp + "\n" + e.getMessage());
+        }
+    }
+
+    // GETTERS
+    public Path getFile() {
+        return file;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * @return Count of written tracks
+     */
+    public synchronized int getTracks() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,146 @@
+package javacore.coop.cachemusic;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Content of track, joined from its parts: count of readable parts and their bytes, that are written.<br>
+ * Every part is read once to pooled buffer, that holds whole part, and is written from that buffer. So boundary
+ * of every two adjacent parts is checked for overlap (see {@link PartOverlap}) before part is written, and repeated
+ * bytes are skipped. Content hash, checksum and validation of MPEG frames are fed from the same buffer
+ * and cover only bytes, that are written.
+ */
+class TrackContent {
+    private int partsRead = 0;
+    private long size = 0;
+    private long trimmed = 0;
+    private String hash = null;
+
+    private TrackContent() {
+    }
+
+    /**
+     * Copies parts of track to the end of channel in one pass. Parts, that can't be read, are skipped.
+     *
+     * @param parts    track parts
+     * @param audio    validator of written bytes or <code>null</code>
+     * @param checksum CRC of written bytes, e.g. for ZIP entry, or <code>null</code>
+     * @param out      destination channel or <code>null</code> to only hash and validate parts
+     * @return content of track
+     * @throws IOException If channel can't be written
+     */
+    static TrackContent copy(List<Path> parts, MpegFrameScanner audio, CRC32 checksum, WritableByteChannel out)
+            throws IOException {
+        TrackContent content = new TrackContent();
+        MessageDigest digest = TrackIndex.newDigest();
+        BufferPool pool = BufferPool.shared();
+        ByteBuffer[] buffers = pool.borrow(2); // both at once: assemblers must not wait for each other's second
+        ByteBuffer buffer = buffers[0];
+        ByteBuffer previous = buffers[1];
+        previous.limit(0);
+        try {
+            for (Path partPath : parts) {
+                try (FileChannel part = FileChannel.open(partPath, StandardOpenOption.READ)) {
+                    buffer.clear();
+                    Metadata.readFully(part, 0, buffer);
+                    buffer.flip();
+                    boolean whole = buffer.limit() == part.size();
+                    int overlap = whole ? PartOverlap.find(previous, buffer) : 0;
+                    buffer.position(overlap);
+                    content.partsRead++;
+                    content.trimmed += overlap;
+                    content.size += pass(buffer, digest, audio, checksum, out);
+                    if (!whole) { // not a cache part: rest is streamed and its boundaries are not checked
+                        long position = buffer.limit();
+                        buffer.clear();
+                        int read;
+                        while ((read = Metadata.readFully(part, position, buffer)) > 0) {
+                            position += read;
+                            buffer.flip();
+                            content.size += pass(buffer, digest, audio, checksum, out);
+                            buffer.clear();
+                        }
+                        buffer.limit(0);
+                    }
+
+                    ByteBuffer filled = buffer;
+                    buffer = previous;
+                    previous = filled;
+                } catch (IOException e) {
+                    System.err.println("Error while reading part " + partPath + "\n" + e.getMessage());
+                    previous.limit(0); // parts around unreadable part are not adjacent
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.release(buffer);
+            pool.release(previous);
+        }
+        if (content.partsRead > 0) content.hash = TrackIndex.toHex(digest.digest());
+        return content;
+    }
+
+    /**
+     * Passes bytes from position to limit of buffer to receivers and writes them to channel.
+     * Failure of channel is thrown as {@link UncheckedIOException}, so it isn't taken for failure of part.
+     *
+     * @return count of passed bytes
+     */
+    private static long pass(ByteBuffer bytes, MessageDigest digest, MpegFrameScanner audio, CRC32 checksum,
+                             WritableByteChannel out) {
+        int count = bytes.remaining();
+        if (audio != null) audio.scan(bytes.duplicate());
+        if (checksum != null) checksum.update(bytes.duplicate());
+        if (out != null) {
+            ByteBuffer written = bytes.duplicate();
+            try {
+                while (written.hasRemaining()) {
+                    out.write(written);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        digest.update(bytes);
+        return count;
+    }
+
+    // GETTERS
+
+    /**
+     * @return count of parts, that were read
+     */
+    int getPartsRead() {
+        return partsRead;
+    }
+
+    /**
+     * @return count of written bytes
+     */
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * @return count of overlapping bytes, that were dropped
+     */
+    long getTrimmed() {
+        return trimmed;
+    }
+
+    /**
+     * @return hexadecimal content hash or <code>null</code> if no part was read
+     */
+    String getHash() {
+        return hash;
+    }
+}
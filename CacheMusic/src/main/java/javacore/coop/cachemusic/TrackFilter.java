@@ -0,0 +1,141 @@
+package javacore.coop.cachemusic;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Filter of songs by artist, title and format of their metadata.<br>
+ * Song is checked by the first tagged part, so song, that isn't wanted, is dropped before its parts are hashed
+ * or copied. Format is the real version of tag: <code>ID3v1</code>, <code>ID3v22</code>, <code>ID3v23</code>,
+ * <code>ID3v24</code> or <code>ID3v2</code>, if version of ID3v2 tag can't be read. Song without metadata has empty
+ * artist and title and format <code>NONE</code>.<br>
+ * Patterns are globs (<code>*</code> - any text, <code>?</code> - any character) or regular expressions
+ * with <code>regex:</code> prefix. Whole value must match, case is ignored.
+ */
+public class TrackFilter {
+    public final static TrackFilter ALL = new TrackFilter(null, null, null);
+
+    private final static String REGEX_PREFIX = "regex:";
+    private final static String GLOB_PREFIX = "glob:";
+    private final static String ID3V24 = Metadata.FormatName.ID3v2.name() + 4;
+
+    private final Pattern artist;
+    private final Pattern title;
+    private final Pattern format;
+
+    /**
+     * @param artist Pattern of artist or <code>null</code> to accept any artist
+     * @param title  Pattern of title or <code>null</code> to accept any title
+     * @param format Pattern of tag version, e.g. <code>ID3v2*</code>, or <code>null</code> to accept any format
+     * @throws IllegalArgumentException If pattern is not valid regular expression
+     */
+    public TrackFilter(String artist, String title, String format) throws IllegalArgumentException {
+        this.artist = compile(artist);
+        this.title = compile(title);
+        this.format = compile(format);
+    }
+
+    /**
+     * Compiles glob or regular expression with <code>regex:</code> prefix.
+     *
+     * @return Case-insensitive pattern or <code>null</code> if expression is <code>null</code>
+     * @throws IllegalArgumentException If regular expression is not valid
+     */
+    private static Pattern compile(String expression) throws IllegalArgumentException {
+        if (expression == null) return null;
+
+        String regex;
+        if (expression.startsWith(REGEX_PREFIX)) {
+            regex = expression.substring(REGEX_PREFIX.length());
+        } else {
+            String glob = expression.startsWith(GLOB_PREFIX) ? expression.substring(GLOB_PREFIX.length()) : expression;
+            StringBuilder builder = new StringBuilder();
+            int literalStart = 0;
+            for (int i = 0; i < glob.length(); i++) {
+                char c = glob.charAt(i);
+                if (c != '*' && c != '?') continue;
+
+                if (i > literalStart) builder.append(Pattern.quote(glob.substring(literalStart, i)));
+                builder.append(c == '*' ? ".*" : ".");
+                literalStart = i + 1;
+            }
+            if (literalStart < glob.length()) builder.append(Pattern.quote(glob.substring(literalStart)));
+            regex = builder.toString();
+        }
+
+        try {
+            return Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL);
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException("Incorrect pattern: " + expression, e);
+        }
+    }
+
+    /**
+     * Checks song by metadata of its first tagged part.<br>
+     * If part was restored from manifest without metadata, only that part is read again.
+     *
+     * @param song Parts of song
+     * @return <code>true</code> if song must be harvested
+     */
+    public boolean accepts(SongGroup song) {
+        if (isAll()) return true;
+
+        CachePart tagged = null;
+        Metadata metadata = null;
+        for (CachePart part : song.getParts()) {
+            if (!part.hasMetadata()) continue;
+
+            tagged = part;
+            metadata = part.getMetadata();
+            if (metadata == null) {
+                try {
+                    metadata = MetadataCache.shared().get(part.getPath()).getMetadata();
+                } catch (IOException e) {
+                    metadata = null;
+                }
+            }
+            break;
+        }
+
+        return matches(artist, metadata == null ? null : metadata.getArtist())
+                && matches(title, metadata == null ? null : metadata.getTitle())
+                && matches(format, formatName(tagged, metadata));
+    }
+
+    /**
+     * Names real version of part's tag. Parsed tag gives its version, otherwise version is told by found header.
+     *
+     * @param part     Tagged part or <code>null</code>
+     * @param metadata Metadata of part or <code>null</code> if it can't be read
+     * @return Name of format, that is matched by format pattern
+     */
+    static String formatName(CachePart part, Metadata metadata) {
+        if (metadata != null && metadata.getFormat() == Metadata.FormatName.ID3v1) {
+            return Metadata.FormatName.ID3v1.name();
+        }
+        if (metadata != null && metadata.getFormat() == Metadata.FormatName.ID3v23) {
+            return Metadata.FormatName.ID3v2.name() + metadata.getVersion();
+        }
+        if (part == null) return Metadata.FormatName.NONE.name();
+
+        if (part.getFormatAtStart() == Metadata.FormatName.ID3v23) { // tag header wasn't parsed
+            return Metadata.FormatName.ID3v2.name();
+        }
+        if (part.getFormatAtEnd() == Metadata.FormatName.ID3v2) { // footer is defined only by ID3v2.4
+            return ID3V24;
+        }
+        return part.hasMetadata() ? Metadata.FormatName.ID3v1.name() : Metadata.FormatName.NONE.name();
+    }
+
+    private static boolean matches(Pattern pattern, String value) {
+        return pattern == null || pattern.matcher(value == null ? "" : value.trim()).matches();
+    }
+
+    /**
+     * @return <code>true</code> if every song is accepted
+     */
+    public boolean isAll() {
+        return artist == null && title == null && format == null;
+    }
+}
@@ -0,0 +1,188 @@
+package javacore.coop.cachemusic;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent index of content hashes of tracks at output folder.<br>
+ * Stored at output folder as append-only list of <code>hash - track</code> lines.
+ * Lets to drop song, that was already assembled from another copy of its parts, before it appears as track.<br>
+ * Tracks may be claimed concurrently by several assemblers.
+ */
+public class TrackIndex {
+    public final static String FILE_NAME = ".track-index";
+
+    private final static String HASH_ALGORITHM = "SHA-256";
+    private final static String TRACK_EXTENSION = ".mp3";
+    private final static String SEPARATOR = "\t";
+    private final static char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final Path outputFolder;
+    private final Path file;
+    private final Map<String, String> tracks = new ConcurrentHashMap<>();
+    // Claimed tracks, that are being written and don't exist yet
+    private final Set<String> writingTracks = ConcurrentHashMap.newKeySet();
+
+    private TrackIndex(Path outputFolder) {
+        this.outputFolder = outputFolder;
+        this.file = outputFolder.resolve(FILE_NAME);
+    }
+
+    /**
+     * Loads index from output folder.<br>
+     * If index not exists - tracks, that are already at output folder, are hashed and indexed.
+     * If index can't be read - returns index, that knows only readable part of it.
+     *
+     * @param outputFolder Folder with harvested tracks
+     * @return Loaded index
+     */
+    public static TrackIndex load(Path outputFolder) {
+        TrackIndex index = new TrackIndex(outputFolder);
+        if (Files.notExists(index.file)) {
+            index.indexTracks();
+            return index;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(index.file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(SEPARATOR, -1);
+                if (fields.length != 2 || fields[0].isEmpty() || fields[1].isEmpty()) continue;
+
+                index.tracks.put(fields[0], fields[1]); // later lines replace earlier ones
+            }
+        } catch (IOException e) {
+            System.err.println("Track index can't be read, duplicates may be written.\n" + e.getMessage());
+        }
+        return index;
+    }
+
+    /**
+     * Hashes tracks of output folder, that were harvested before index appeared.
+     */
+    private void indexTracks() {
+        if (!Files.isDirectory(outputFolder)) return;
+
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(outputFolder, "*" + TRACK_EXTENSION)) {
+            for (Path track : directoryStream) {
+                String hash = FileBuilder.hash(Collections.singletonList(track));
+                if (hash != null) claim(hash, track.getFileName().toString());
+            }
+        } catch (IOException e) {
+            System.err.println("Tracks of output folder can't be indexed!\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Searches for track with the same content.
+     *
+     * @param hash Content hash of track
+     * @return File name of existing track or <code>null</code> if there is no such track
+     */
+    public String getTrack(String hash) {
+        String track = tracks.get(hash);
+        return track == null || !exists(track) ? null : track;
+    }
+
+    /**
+     * Remembers track as owner of content hash, if there is no existing track with the same content.<br>
+     * Tracks, that were deleted from output folder, don't own their hashes anymore.
+     * Claimed track is considered as existing until it is {@link #written(String)} or {@link #abandon(String, String)}.
+     *
+     * @param hash  Content hash of track
+     * @param track File name of new track
+     * @return File name of existing track with the same content or <code>null</code> if new track owns hash now
+     */
+    public String claim(String hash, String track) {
+        while (true) {
+            String existing = tracks.putIfAbsent(hash, track);
+            if (existing == null) break;
+            if (exists(existing)) return existing;
+            if (tracks.replace(hash, existing, track)) break;
+        }
+        writingTracks.add(track);
+        append(hash, track);
+        return null;
+    }
+
+    /**
+     * Marks claimed track as written to output folder.
+     *
+     * @param track File name of track
+     */
+    public void written(String track) {
+        writingTracks.remove(track);
+    }
+
+    /**
+     * Forgets claim of track, that can't be written.
+     *
+     * @param hash  Content hash of track
+     * @param track File name of track
+     */
+    public void abandon(String hash, String track) {
+        tracks.remove(hash, track);
+        writingTracks.remove(track);
+    }
+
+    private boolean exists(String track) {
+        return writingTracks.contains(track) || Files.exists(outputFolder.resolve(track));
+    }
+
+    /**
+     * Appends claimed hash to index file.
+     */
+    private synchronized void append(String hash, String track) {
+        try {
+            Files.createDirectories(outputFolder);
+            Files.write(file, (hash + SEPARATOR + track + System.lineSeparator()).getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Track index can't be written!\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Makes digest of content hash.
+     *
+     * @return New digest
+     */
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(HASH_ALGORITHM + " is not supported", e); // required by every JRE
+        }
+    }
+
+    /**
+     * Converts digest to hexadecimal string.
+     *
+     * @param digest Bytes of digest
+     * @return Lowercase hexadecimal string
+     */
+    static String toHex(byte[] digest) {
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0x0F];
+            hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0x0F];
+        }
+        return new String(hex);
+    }
+
+    // GETTERS
+    public int getSize() {
+        return tracks.size();
+    }
+}
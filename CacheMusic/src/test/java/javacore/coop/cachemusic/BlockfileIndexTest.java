@@ -0,0 +1,239 @@
+package javacore.coop.cachemusic;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BlockfileIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path cacheFolder;
+
+    /**
+     * Blockfile cache with 256 bytes blocks at <code>data_1</code> and hash table of 16 buckets.
+     */
+    private static class BlockfileCache {
+        private final static int INDEX_MAGIC = 0xC103CAC3;
+        private final static int BLOCK_FILE_MAGIC = 0xC104CAC3;
+        private final static int INDEX_HEADER_LENGTH = 256;
+        private final static int BLOCK_FILE_HEADER_LENGTH = 8192;
+        private final static int BLOCK_SIZE = 256;
+        private final static int TABLE_LENGTH = 16;
+
+        private final List<byte[]> blocks = new ArrayList<>();
+        private final int[] table = new int[TABLE_LENGTH];
+        private int version = 0x20000;
+        private int crash = 0;
+
+        /**
+         * Stores data at consecutive blocks.
+         *
+         * @return Cache address of blocks
+         */
+        int store(byte[] data) {
+            int count = Math.max(1, (data.length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+            int start = blocks.size();
+            for (int i = 0; i < count; i++) {
+                blocks.add(Arrays.copyOfRange(data, i * BLOCK_SIZE, (i + 1) * BLOCK_SIZE));
+            }
+            return 0x8000_0000 | 2 << 28 | (count - 1) << 24 | 1 << 16 | start;
+        }
+
+        static int external(int partNumber) {
+            return 0x8000_0000 | partNumber;
+        }
+
+        /**
+         * Stores entry with key at its blocks.
+         */
+        int entry(String key, String headers, int bodyAddress, int state) {
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer entry = ByteBuffer.allocate(96 + keyBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+            fillEntry(entry, keyBytes.length, headers, bodyAddress, state);
+            entry.position(96);
+            entry.put(keyBytes);
+            return store(entry.array());
+        }
+
+        /**
+         * Stores entry, which key is stored at separate blocks.
+         */
+        int entryWithLongKey(String key, String headers, int bodyAddress) {
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer entry = ByteBuffer.allocate(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            fillEntry(entry, keyBytes.length, headers, bodyAddress, 0);
+            entry.putInt(36, store(keyBytes));
+            return store(entry.array());
+        }
+
+        private void fillEntry(ByteBuffer entry, int keyLength, String headers, int bodyAddress, int state) {
+            entry.putInt(20, state);
+            entry.putInt(32, keyLength);
+            if (headers != null) {
+                byte[] headerBytes = headers.getBytes(StandardCharsets.ISO_8859_1);
+                entry.putInt(40, headerBytes.length);
+                entry.putInt(56, store(headerBytes));
+            }
+            entry.putInt(60, bodyAddress);
+        }
+
+        /**
+         * Puts entries to bucket: each entry links to the next one.
+         */
+        void bucket(int bucket, int... entries) {
+            table[bucket] = entries[0];
+            for (int i = 0; i + 1 < entries.length; i++) {
+                ByteBuffer.wrap(blocks.get(entries[i] & 0xFFFF)).order(ByteOrder.LITTLE_ENDIAN)
+                        .putInt(4, entries[i + 1]);
+            }
+        }
+
+        void write(Path cacheFolder) throws IOException {
+            ByteBuffer index = ByteBuffer.allocate(INDEX_HEADER_LENGTH + TABLE_LENGTH * 4)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            index.putInt(0, INDEX_MAGIC).putInt(4, version).putInt(28, TABLE_LENGTH).putInt(32, crash);
+            for (int bucket = 0; bucket < TABLE_LENGTH; bucket++) {
+                index.putInt(INDEX_HEADER_LENGTH + bucket * 4, table[bucket]);
+            }
+            Files.write(cacheFolder.resolve("index"), index.array());
+
+            ByteBuffer data = ByteBuffer.allocate(BLOCK_FILE_HEADER_LENGTH + blocks.size() * BLOCK_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            data.putInt(BLOCK_FILE_MAGIC);
+            data.position(BLOCK_FILE_HEADER_LENGTH);
+            for (byte[] block : blocks) {
+                data.put(block);
+            }
+            Files.write(cacheFolder.resolve("data_1"), data.array());
+        }
+    }
+
+    @Before
+    public void makeParts() throws IOException {
+        cacheFolder = folder.getRoot().toPath().toAbsolutePath();
+        for (int number = 1; number <= 0x0b; number++) {
+            Files.write(cacheFolder.resolve(PartOrder.fileName(number)), new byte[]{(byte) number});
+        }
+    }
+
+    private static String headers(String contentType) {
+        return "HTTP/1.1 200 OK\0Content-Type: " + contentType + "\0Content-Length: 100\0\0";
+    }
+
+    private BlockfileCache mediaCache() {
+        BlockfileCache cache = new BlockfileCache();
+        String a = "https://music.example/a.mp3";
+        String b = "https://music.example/b";
+        cache.bucket(0, cache.entry(a, headers("audio/mpeg"), 0, 0),
+                cache.entry("Range_" + a + ":42:2", null, BlockfileCache.external(5), 0));
+        cache.bucket(3, cache.entry("Range_" + a + ":42:0", null, BlockfileCache.external(7), 0));
+        cache.bucket(7, cache.entry("Range_" + a + ":42:1", null, BlockfileCache.external(3), 0),
+                // response without main entry has unknown content type
+                cache.entry("Range_" + b + ":7:1", null, BlockfileCache.external(2), 0),
+                cache.entry("Range_" + b + ":7:0", null, BlockfileCache.external(1), 0),
+                cache.entry("Range_" + b + ":7:2", null, BlockfileCache.external(0x0c), 0)); // evicted part file
+        cache.bucket(9, cache.entry("https://music.example/page", headers("text/html"), BlockfileCache.external(9), 0),
+                cache.entry("https://music.example/c.ogg", headers("audio/ogg"), BlockfileCache.external(0x0a), 0),
+                cache.entry("Range_https://music.example/d:1:0", null, BlockfileCache.external(0x0b), 1)); // doomed
+        return cache;
+    }
+
+    private List<Path> parts(int... numbers) {
+        List<Path> parts = new ArrayList<>();
+        for (int number : numbers) {
+            parts.add(cacheFolder.resolve(PartOrder.fileName(number)));
+        }
+        return parts;
+    }
+
+    @Test
+    public void listsRangesOfMediaResponsesInCacheOrder() throws IOException {
+        mediaCache().write(cacheFolder);
+
+        assertTrue(BlockfileIndex.exists(cacheFolder));
+        assertEquals(parts(1, 2, 7, 3, 5, 0x0a), BlockfileIndex.listMediaParts(cacheFolder));
+    }
+
+    @Test
+    public void readsKeyStoredAtSeparateBlocks() throws IOException {
+        BlockfileCache cache = new BlockfileCache();
+        char[] path = new char[300];
+        Arrays.fill(path, 'p');
+        String url = "https://music.example/" + new String(path);
+        cache.bucket(1, cache.entryWithLongKey("Range_" + url + ":5:1", null, BlockfileCache.external(4)),
+                cache.entryWithLongKey("Range_" + url + ":5:0", null, BlockfileCache.external(6)));
+        cache.write(cacheFolder);
+
+        assertEquals(parts(6, 4), BlockfileIndex.listMediaParts(cacheFolder));
+    }
+
+    @Test
+    public void readsIndexOfVersion3() throws IOException {
+        BlockfileCache cache = mediaCache();
+        cache.version = 0x30000;
+        cache.write(cacheFolder);
+
+        assertEquals(parts(1, 2, 7, 3, 5, 0x0a), BlockfileIndex.listMediaParts(cacheFolder));
+    }
+
+    @Test
+    public void rejectsIndexOfCacheThatWasNotClosed() throws IOException {
+        BlockfileCache cache = mediaCache();
+        cache.crash = 1;
+        cache.write(cacheFolder);
+
+        assertFails();
+    }
+
+    @Test
+    public void rejectsUnknownIndex() throws IOException {
+        BlockfileCache cache = mediaCache();
+        cache.version = 0x10000;
+        cache.write(cacheFolder);
+        assertFails();
+
+        cache.version = 0x20000;
+        cache.write(cacheFolder);
+        Files.write(cacheFolder.resolve("index"), new byte[]{1, 2, 3, 4});
+        assertFails();
+    }
+
+    @Test
+    public void rejectsUnknownBlockFile() throws IOException {
+        mediaCache().write(cacheFolder);
+        Files.write(cacheFolder.resolve("data_1"), new byte[8192 * 2]);
+
+        assertFails();
+    }
+
+    @Test
+    public void folderWithoutIndexIsNotBlockfileCache() {
+        assertFalse(BlockfileIndex.exists(cacheFolder));
+    }
+
+    private void assertFails() {
+        try {
+            BlockfileIndex.listMediaParts(cacheFolder);
+            fail("Index must be rejected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package javacore.coop.cachemusic;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BufferPoolTest {
+    private final static int MAX_BUFFERS = 3;
+    private final static int THREADS = 16;
+    private final static int ROUNDS = 200;
+
+    @Test
+    public void returnedBufferIsReused() {
+        BufferPool pool = new BufferPool(1024, MAX_BUFFERS);
+        ByteBuffer buffer = pool.borrow();
+        buffer.put((byte) 1);
+        pool.release(buffer);
+
+        ByteBuffer again = pool.borrow();
+        assertSame(buffer, again);
+        assertEquals(0, again.position());
+        assertEquals(1024, again.limit());
+        assertEquals(1, pool.getAllocated());
+        assertEquals(2, pool.getBorrowed());
+    }
+
+    @Test
+    public void foreignBufferIsNotTaken() {
+        BufferPool pool = new BufferPool(1024, MAX_BUFFERS);
+        pool.release(ByteBuffer.allocateDirect(512));
+        pool.release(null);
+
+        assertEquals(1024, pool.borrow().capacity());
+        assertEquals(1, pool.getAllocated());
+    }
+
+    @Test
+    public void neverGrowsPastCapUnderConcurrentBorrowers() throws Exception {
+        BufferPool pool = new BufferPool(1024, MAX_BUFFERS);
+        AtomicInteger out = new AtomicInteger();
+        AtomicInteger maxOut = new AtomicInteger();
+
+        runConcurrently(() -> {
+            for (int round = 0; round < ROUNDS; round++) {
+                boolean pair = round % 2 == 0;
+                ByteBuffer[] buffers = pair ? pool.borrow(2) : new ByteBuffer[]{pool.borrow()};
+                int now = out.addAndGet(buffers.length);
+                maxOut.accumulateAndGet(now, Math::max);
+                Thread.yield();
+                out.addAndGet(-buffers.length);
+                for (ByteBuffer buffer : buffers) {
+                    pool.release(buffer);
+                }
+            }
+        });
+
+        assertTrue("Buffers out at once: " + maxOut.get(), maxOut.get() <= MAX_BUFFERS);
+        assertTrue("Allocated buffers: " + pool.getAllocated(), pool.getAllocated() <= MAX_BUFFERS);
+        assertEquals(THREADS * ROUNDS * 3 / 2, pool.getBorrowed());
+    }
+
+    /**
+     * Runs task by every thread at once and waits until all of them finish: borrowers, that wait forever, fail test.
+     */
+    private static void runConcurrently(Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
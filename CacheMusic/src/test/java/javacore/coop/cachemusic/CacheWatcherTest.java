@@ -0,0 +1,164 @@
+package javacore.coop.cachemusic;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static javacore.coop.cachemusic.Fixtures.concat;
+import static javacore.coop.cachemusic.Fixtures.id3v2Tag;
+import static javacore.coop.cachemusic.Fixtures.mpegFrames;
+import static javacore.coop.cachemusic.Fixtures.textFrame;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CacheWatcherTest {
+    private final static long DEBOUNCE_MILLIS = 50;
+    private final static long WAIT_MILLIS = 10_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path cacheFolder;
+    private Path outputFolder;
+    private HarvestManifest manifest;
+    private CacheWatcher watcher;
+    private Thread watching;
+    private int partNumber = 0;
+
+    @Before
+    public void makeFolders() throws IOException {
+        cacheFolder = folder.newFolder("cache").toPath();
+        outputFolder = folder.newFolder("output").toPath();
+        manifest = HarvestManifest.empty(outputFolder, cacheFolder);
+    }
+
+    @After
+    public void stopWatcher() throws IOException, InterruptedException {
+        if (watcher == null) return;
+
+        watcher.close();
+        watching.join(WAIT_MILLIS);
+    }
+
+    private void watch(SongAssembler assembler, long songIdleMillis) throws IOException {
+        watcher = new CacheWatcher(cacheFolder, assembler, DEBOUNCE_MILLIS, songIdleMillis, ExecutorMode.FIXED);
+        watching = new Thread(() -> {
+            try {
+                watcher.run();
+            } catch (IOException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        watching.start();
+    }
+
+    /**
+     * Writes song as tagged part, followed by untagged one.
+     *
+     * @return Parts of song
+     */
+    private List<Path> writeSong(String title, int frames) throws IOException {
+        byte[] tag = id3v2Tag(3, 0, 0, textFrame(3, "TIT2", 0, title), textFrame(3, "TPE1", 0, "Artist"));
+        byte[] audio = mpegFrames(frames);
+        List<Path> parts = new ArrayList<>();
+        parts.add(writePart(concat(tag, Arrays.copyOf(audio, audio.length / 2))));
+        parts.add(writePart(Arrays.copyOfRange(audio, audio.length / 2, audio.length)));
+        return parts;
+    }
+
+    private Path writePart(byte[] content) throws IOException {
+        Path part = cacheFolder.resolve(PartOrder.fileName(++partNumber));
+        Files.write(part, content);
+        return part;
+    }
+
+    private List<String> tracks() throws IOException {
+        List<String> tracks = new ArrayList<>();
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(outputFolder, "*.mp3")) {
+            for (Path track : directoryStream) {
+                tracks.add(track.getFileName().toString());
+            }
+        }
+        return tracks;
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) return false;
+            Thread.sleep(DEBOUNCE_MILLIS);
+        }
+        return true;
+    }
+
+    private boolean awaitTracks(int count) throws InterruptedException {
+        return await(() -> {
+            try {
+                return tracks().size() >= count;
+            } catch (IOException e) {
+                return false;
+            }
+        });
+    }
+
+    @Test
+    public void pauseOfStreamDoesNotCloseSong() throws IOException, InterruptedException {
+        watch(new SongAssembler(outputFolder, manifest), WAIT_MILLIS * 10);
+        writeSong("First", 20);
+
+        // many debounce periods pass, but song may still be buffered
+        Thread.sleep(20 * DEBOUNCE_MILLIS);
+        assertEquals(0, tracks().size());
+
+        writeSong("Second", 21);
+        assertTrue(awaitTracks(1));
+        Thread.sleep(5 * DEBOUNCE_MILLIS);
+        List<String> tracks = tracks();
+        assertEquals(1, tracks.size());
+        assertTrue(tracks.get(0), tracks.get(0).contains("First"));
+    }
+
+    @Test
+    public void lastSongIsClosedAfterSongIdlePeriod() throws IOException, InterruptedException {
+        watch(new SongAssembler(outputFolder, manifest), 10 * DEBOUNCE_MILLIS);
+        List<Path> parts = writeSong("Only", 20);
+
+        assertTrue(awaitTracks(1));
+        assertTrue(tracks().get(0).contains("Only"));
+        assertTrue(await(() -> manifest.isRecorded(parts.get(1))));
+    }
+
+    @Test
+    public void partsOfFailedSongAreHarvestedAgainWhenChanged() throws IOException, InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        SongAssembler failing = new SongAssembler(outputFolder, manifest) {
+            @Override
+            public BuildResult assemble(SongGroup song) {
+                if (attempts.incrementAndGet() == 1) throw new IllegalStateException("Expected failure of test");
+                return super.assemble(song);
+            }
+        };
+        watch(failing, 10 * DEBOUNCE_MILLIS);
+        List<Path> parts = writeSong("Retried", 20);
+        assertTrue(await(() -> attempts.get() == 1));
+        assertEquals(0, tracks().size());
+
+        for (Path part : parts) {
+            Files.write(part, Files.readAllBytes(part)); // part is written again by browser
+        }
+        assertTrue(awaitTracks(1));
+        assertEquals(2, attempts.get());
+    }
+}
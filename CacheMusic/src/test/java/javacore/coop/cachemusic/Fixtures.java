@@ -0,0 +1,125 @@
+package javacore.coop.cachemusic;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixed bytes of tags, frames and parts for tests.
+ */
+class Fixtures {
+    // MPEG-1 layer III, 128 kbit/s, 44100 Hz, no padding: 144 * 128000 / 44100 = 417 bytes
+    final static byte[] MPEG_HEADER = {(byte) 0xFF, (byte) 0xFB, (byte) 0x90, 0x00};
+    final static int MPEG_FRAME_LENGTH = 417;
+    final static double MPEG_FRAME_SECONDS = 1152d / 44100;
+
+    private Fixtures() {
+    }
+
+    static byte[] concat(byte[]... arrays) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] array : arrays) {
+            out.write(array, 0, array.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes 4 bytes syncsafe integer: 7 significant bits per byte.
+     */
+    static byte[] syncsafe(int value) {
+        return new byte[]{(byte) ((value >> 21) & 0x7F), (byte) ((value >> 14) & 0x7F),
+                (byte) ((value >> 7) & 0x7F), (byte) (value & 0x7F)};
+    }
+
+    static byte[] bigEndian(long value, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = length - 1; i >= 0; i--) {
+            bytes[i] = (byte) value;
+            value >>= 8;
+        }
+        return bytes;
+    }
+
+    /**
+     * Makes ID3v2 tag of frames, followed by padding. Tag size is written as syncsafe integer.
+     */
+    static byte[] id3v2Tag(int version, int flags, int padding, byte[]... frames) {
+        byte[] body = concat(concat(frames), new byte[padding]);
+        return concat(new byte[]{'I', 'D', '3', (byte) version, 0, (byte) flags}, syncsafe(body.length), body);
+    }
+
+    /**
+     * Makes frame with header of tag version: 3 chars ID and 3 bytes size at ID3v2.2,
+     * plain size at ID3v2.3 and syncsafe size at ID3v2.4.
+     */
+    static byte[] frame(int version, String id, int formatFlags, byte[] data) {
+        byte[] idBytes = id.getBytes(StandardCharsets.ISO_8859_1);
+        if (version == 2) return concat(idBytes, bigEndian(data.length, 3), data);
+
+        byte[] size = version == 3 ? bigEndian(data.length, 4) : syncsafe(data.length);
+        return concat(idBytes, size, new byte[]{0, (byte) formatFlags}, data);
+    }
+
+    static byte[] textFrame(int version, String id, int encoding, String text) {
+        Charset charset;
+        switch (encoding) {
+            case 0:
+                charset = StandardCharsets.ISO_8859_1;
+                break;
+            case 1:
+                charset = StandardCharsets.UTF_16; // big-endian with byte order mark
+                break;
+            case 2:
+                charset = StandardCharsets.UTF_16BE;
+                break;
+            default:
+                charset = StandardCharsets.UTF_8;
+                break;
+        }
+        return frame(version, id, 0, concat(new byte[]{(byte) encoding}, text.getBytes(charset)));
+    }
+
+    /**
+     * Makes 128 bytes ID3v1 tag.
+     */
+    static byte[] id3v1Tag(String title, String artist) {
+        byte[] tag = new byte[Metadata.ID3V1_HEADER_LENGTH_BYTES];
+        tag[0] = 'T';
+        tag[1] = 'A';
+        tag[2] = 'G';
+        byte[] titleBytes = title.getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(titleBytes, 0, tag, 3, titleBytes.length);
+        byte[] artistBytes = artist.getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(artistBytes, 0, tag, 33, artistBytes.length);
+        return tag;
+    }
+
+    /**
+     * Makes MPEG audio of frames, which bodies never contain frame sync and don't repeat.
+     */
+    static byte[] mpegFrames(int count) {
+        byte[] audio = noise(count * MPEG_FRAME_LENGTH, count);
+        for (int frame = 0; frame < count; frame++) {
+            int start = frame * MPEG_FRAME_LENGTH;
+            System.arraycopy(MPEG_HEADER, 0, audio, start, MPEG_HEADER.length);
+            for (int i = MPEG_HEADER.length; i < MPEG_FRAME_LENGTH; i++) {
+                audio[start + i] &= 0x7F;
+            }
+        }
+        return audio;
+    }
+
+    /**
+     * Makes bytes, that don't repeat at any short period.
+     */
+    static byte[] noise(int length, long seed) {
+        byte[] bytes = new byte[length];
+        long state = seed;
+        for (int i = 0; i < length; i++) {
+            state = state * 6364136223846793005L + 1442695040888963407L;
+            bytes[i] = (byte) (state >>> 56);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,189 @@
+package javacore.coop.cachemusic;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HarvestManifestTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path outputFolder;
+    private Path cacheFolder;
+    private Path otherCacheFolder;
+
+    @Before
+    public void makeFolders() throws IOException {
+        outputFolder = folder.newFolder("output").toPath();
+        cacheFolder = folder.newFolder("cache").toPath();
+        otherCacheFolder = folder.newFolder("other").toPath();
+    }
+
+    private CachePart part(Path cache, int number, String songName) throws IOException {
+        Path path = cache.resolve(PartOrder.fileName(number));
+        Files.write(path, new byte[100 + number]);
+        Files.setLastModifiedTime(path, FileTime.fromMillis(1_500_000_000_000L + number * 1000L));
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return new CachePart(path, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                Metadata.FormatName.ID3v23, Metadata.FormatName.NONE, songName);
+    }
+
+    private static CachePart restore(HarvestManifest manifest, CachePart part) throws IOException {
+        return manifest.restore(part.getPath(), Files.readAttributes(part.getPath(), BasicFileAttributes.class));
+    }
+
+    @Test
+    public void restoresSavedParts() throws IOException {
+        CachePart first = part(cacheFolder, 1, "Artist - Title");
+        CachePart second = part(cacheFolder, 2, null);
+        HarvestManifest manifest = HarvestManifest.empty(outputFolder, cacheFolder);
+        manifest.record(new SongGroup(Arrays.asList(first, second)), "Artist - Title.mp3");
+        assertTrue(manifest.isChanged());
+        manifest.save();
+        assertFalse(manifest.isChanged());
+
+        HarvestManifest loaded = HarvestManifest.load(outputFolder, cacheFolder);
+        CachePart restored = restore(loaded, first);
+        assertNotNull(restored);
+        assertEquals(first.getSize(), restored.getSize());
+        assertEquals(first.getLastModified(), restored.getLastModified());
+        assertEquals(Metadata.FormatName.ID3v23, restored.getFormatAtStart());
+        assertEquals("Artist - Title", restored.getSongName());
+        assertEquals("Artist - Title.mp3", loaded.getTrack(restored));
+        assertNull(restore(loaded, second).getSongName());
+        assertTrue(loaded.isRecorded(second.getPath()));
+        assertFalse(loaded.isChanged());
+    }
+
+    @Test
+    public void changedPartIsNotRestored() throws IOException {
+        CachePart part = part(cacheFolder, 1, null);
+        HarvestManifest manifest = HarvestManifest.empty(outputFolder, cacheFolder);
+        manifest.record(part, null);
+        manifest.save();
+        Files.write(part.getPath(), new byte[5000]);
+
+        assertNull(restore(HarvestManifest.load(outputFolder, cacheFolder), part));
+    }
+
+    @Test
+    public void replaysJournalOfInterruptedHarvest() throws IOException {
+        CachePart first = part(cacheFolder, 1, "First");
+        CachePart second = part(cacheFolder, 2, "Second");
+        CachePart third = part(cacheFolder, 3, "Second");
+        HarvestManifest manifest = HarvestManifest.empty(outputFolder, cacheFolder);
+        manifest.record(new SongGroup(Collections.singletonList(first)), "First.mp3");
+        manifest.record(new SongGroup(Arrays.asList(second, third)), "Second.mp3");
+        // harvest dies before manifest is saved
+        assertFalse(Files.exists(outputFolder.resolve(HarvestManifest.FILE_NAME)));
+
+        HarvestManifest resumed = HarvestManifest.load(outputFolder, cacheFolder);
+        assertEquals("First.mp3", resumed.getTrack(restore(resumed, first)));
+        assertEquals("Second.mp3", resumed.getTrack(restore(resumed, third)));
+    }
+
+    @Test
+    public void skipsLineCutAtEndOfJournal() throws IOException {
+        CachePart first = part(cacheFolder, 1, "First");
+        CachePart second = part(cacheFolder, 2, "Second");
+        CachePart third = part(cacheFolder, 3, "Second");
+        HarvestManifest manifest = HarvestManifest.empty(outputFolder, cacheFolder);
+        manifest.record(new SongGroup(Collections.singletonList(first)), "First.mp3");
+        manifest.record(new SongGroup(Arrays.asList(second, third)), "Second.mp3");
+        Path journal = outputFolder.resolve(HarvestManifest.JOURNAL_FILE_NAME);
+        String lines = new String(Files.readAllBytes(journal), StandardCharsets.UTF_8);
+        String cut = lines.substring(0, lines.lastIndexOf('\t')); // last line lost its last field
+        Files.write(journal, cut.getBytes(StandardCharsets.UTF_8));
+
+        HarvestManifest resumed = HarvestManifest.load(outputFolder, cacheFolder);
+        assertEquals("First.mp3", resumed.getTrack(restore(resumed, first)));
+        assertEquals("Second.mp3", resumed.getTrack(restore(resumed, second)));
+        assertNull(restore(resumed, third));
+
+        // resumed harvest records the rest and saves manifest, journal is cleared
+        resumed.record(third, "Second.mp3");
+        resumed.save();
+        assertFalse(Files.exists(journal));
+        HarvestManifest loaded = HarvestManifest.load(outputFolder, cacheFolder);
+        assertEquals("Second.mp3", loaded.getTrack(restore(loaded, third)));
+    }
+
+    @Test
+    public void songRecordedAfterCutLineIsReplayed() throws IOException {
+        CachePart first = part(cacheFolder, 1, "First");
+        CachePart second = part(cacheFolder, 2, "Second");
+        CachePart other = part(otherCacheFolder, 1, "Other");
+        List<Path> cacheFolders = Arrays.asList(cacheFolder, otherCacheFolder);
+        HarvestManifest manifest = HarvestManifest.empty(outputFolder, cacheFolders);
+        manifest.record(new SongGroup(Collections.singletonList(first)), "First.mp3");
+        manifest.record(new SongGroup(Collections.singletonList(second)), "Second.mp3");
+        Path journal = outputFolder.resolve(HarvestManifest.JOURNAL_FILE_NAME);
+        byte[] lines = Files.readAllBytes(journal);
+        Files.write(journal, Arrays.copyOf(lines, lines.length - 5)); // harvest died while writing last line
+
+        // new song starts with section of another cache folder: glued to cut line, it would be lost
+        HarvestManifest resumed = HarvestManifest.load(outputFolder, cacheFolders);
+        resumed.record(new SongGroup(Collections.singletonList(other)), "Other.mp3");
+        String journaled = new String(Files.readAllBytes(journal), StandardCharsets.UTF_8);
+        assertTrue(journaled.endsWith("\n"));
+
+        HarvestManifest loaded = HarvestManifest.load(outputFolder, cacheFolders);
+        assertEquals("First.mp3", loaded.getTrack(restore(loaded, first)));
+        assertNull(restore(loaded, second));
+        assertEquals("Other.mp3", loaded.getTrack(restore(loaded, other)));
+    }
+
+    @Test
+    public void journalIsReplayedOverSavedManifest() throws IOException {
+        CachePart first = part(cacheFolder, 1, null);
+        HarvestManifest manifest = HarvestManifest.empty(outputFolder, cacheFolder);
+        manifest.record(first, null);
+        manifest.save();
+        manifest.record(new SongGroup(Collections.singletonList(first)), "First.mp3");
+
+        HarvestManifest resumed = HarvestManifest.load(outputFolder, cacheFolder);
+        assertEquals("First.mp3", resumed.getTrack(restore(resumed, first)));
+    }
+
+    @Test
+    public void keepsSectionsOfCacheFoldersHarvestedApart() throws IOException {
+        CachePart own = part(cacheFolder, 1, null);
+        CachePart other = part(otherCacheFolder, 1, null);
+        HarvestManifest both = HarvestManifest.empty(outputFolder, Arrays.asList(cacheFolder, otherCacheFolder));
+        both.record(own, "Own.mp3");
+        both.record(other, "Other.mp3");
+        both.save();
+
+        HarvestManifest single = HarvestManifest.load(outputFolder, cacheFolder);
+        restore(single, own);
+        single.save();
+
+        HarvestManifest loaded = HarvestManifest.load(outputFolder, otherCacheFolder);
+        assertEquals("Other.mp3", loaded.getTrack(restore(loaded, other)));
+    }
+
+    @Test
+    public void damagedManifestIsIgnored() throws IOException {
+        CachePart part = part(cacheFolder, 1, null);
+        Files.write(outputFolder.resolve(HarvestManifest.FILE_NAME), "garbage\n".getBytes(StandardCharsets.UTF_8));
+
+        assertNull(restore(HarvestManifest.load(outputFolder, cacheFolder), part));
+    }
+}
@@ -0,0 +1,185 @@
+package javacore.coop.cachemusic;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static javacore.coop.cachemusic.Fixtures.bigEndian;
+import static javacore.coop.cachemusic.Fixtures.concat;
+import static javacore.coop.cachemusic.Fixtures.frame;
+import static javacore.coop.cachemusic.Fixtures.id3v2Tag;
+import static javacore.coop.cachemusic.Fixtures.syncsafe;
+import static javacore.coop.cachemusic.Fixtures.textFrame;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ID3v2FrameIndexTest {
+    private final static int TAG_HEADER_LENGTH = 10;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FileChannel open(byte[] bytes) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, bytes);
+        return FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    @Test
+    public void decodesSyncsafeTagAndFrameSizesOfID3v24() throws IOException {
+        String longTitle = repeat('t', 299); // frame size 300 differs when read as plain integer
+        byte[] tag = id3v2Tag(4, 0, 0, textFrame(4, "TIT2", 0, longTitle), textFrame(4, "TPE1", 0, "Artist"));
+        try (FileChannel channel = open(tag)) {
+            ID3v2FrameIndex index = ID3v2FrameIndex.open(channel);
+
+            assertEquals(4, index.getVersion());
+            assertEquals("Artist", index.text("TPE1"));
+            assertEquals(longTitle, index.text("TIT2"));
+        }
+    }
+
+    @Test
+    public void readsPlainFrameSizesOfID3v23() throws IOException {
+        String longTitle = repeat('t', 199); // frame size 200 has the high bit of its last byte set
+        byte[] tag = id3v2Tag(3, 0, 0, textFrame(3, "TIT2", 0, longTitle), textFrame(3, "TPE1", 0, "Artist"));
+        try (FileChannel channel = open(tag)) {
+            ID3v2FrameIndex index = ID3v2FrameIndex.open(channel);
+
+            assertEquals("Artist", index.text("TPE1"));
+            assertEquals(longTitle, index.text("TIT2"));
+        }
+    }
+
+    @Test
+    public void resynchronizesTextOfUnsyncTag() throws IOException {
+        byte[] data = {0, 'A', (byte) 0xFF, 0, 'B'};
+        byte[] tag = id3v2Tag(3, 0b1000_0000, 0, frame(3, "TIT2", 0, data));
+        try (FileChannel channel = open(tag)) {
+            ID3v2FrameIndex index = ID3v2FrameIndex.open(channel);
+
+            assertTrue(index.isUnsync());
+            assertEquals("AÿB", index.text("TIT2"));
+        }
+    }
+
+    @Test
+    public void resynchronizesOnlyUnsyncFramesOfID3v24() throws IOException {
+        byte[] data = {0, 'A', (byte) 0xFF, 0, 'B'};
+        byte[] tag = id3v2Tag(4, 0, 0, frame(4, "TIT2", 0b0000_0010, data), frame(4, "TPE1", 0, data));
+        try (FileChannel channel = open(tag)) {
+            ID3v2FrameIndex index = ID3v2FrameIndex.open(channel);
+
+            assertFalse(index.isUnsync());
+            assertEquals("AÿB", index.text("TIT2"));
+            assertEquals("Aÿ", index.text("TPE1")); // zero byte, that is kept, ends first value
+        }
+    }
+
+    @Test
+    public void skipsExtendedHeaderOfID3v23() throws IOException {
+        // size excludes itself: 2 bytes of flags and 4 bytes of padding size
+        byte[] extended = concat(bigEndian(6, 4), new byte[6]);
+        byte[] tag = id3v2Tag(3, 0b0100_0000, 0, extended, textFrame(3, "TIT2", 0, "Title"));
+        try (FileChannel channel = open(tag)) {
+            ID3v2FrameIndex index = ID3v2FrameIndex.open(channel);
+
+            assertTrue(index.hasExtendedHeader());
+            assertEquals("Title", index.text("TIT2"));
+        }
+    }
+
+    @Test
+    public void skipsExtendedHeaderOfID3v24() throws IOException {
+        // size includes itself: number of flag bytes and one flag byte
+        byte[] extended = concat(syncsafe(6), new byte[]{1, 0});
+        byte[] tag = id3v2Tag(4, 0b0100_0000, 0, extended, textFrame(4, "TIT2", 0, "Title"));
+        try (FileChannel channel = open(tag)) {
+            ID3v2FrameIndex index = ID3v2FrameIndex.open(channel);
+
+            assertTrue(index.hasExtendedHeader());
+            assertEquals("Title", index.text("TIT2"));
+        }
+    }
+
+    @Test
+    public void skipsDataLengthIndicatorOfID3v24Frame() throws IOException {
+        byte[] data = concat(syncsafe(6), new byte[]{0, 'T', 'i', 't', 'l', 'e'});
+        byte[] tag = id3v2Tag(4, 0, 0, frame(4, "TIT2", 0b0000_0001, data));
+        try (FileChannel channel = open(tag)) {
+            assertEquals("Title", ID3v2FrameIndex.open(channel).text("TIT2"));
+        }
+    }
+
+    @Test
+    public void compressedFrameIsNotRead() throws IOException {
+        byte[] tag = id3v2Tag(3, 0, 0, frame(3, "TIT2", 0b1000_0000, new byte[]{0, 'x', 'y'}));
+        try (FileChannel channel = open(tag)) {
+            ID3v2FrameIndex index = ID3v2FrameIndex.open(channel);
+
+            assertTrue(index.contains("TIT2"));
+            assertNull(index.text("TIT2"));
+        }
+    }
+
+    @Test
+    public void findsFrameAfterFrameBiggerThanChunk() throws IOException {
+        byte[] picture = frame(3, "APIC", 0, new byte[20000]);
+        byte[] tag = id3v2Tag(3, 0, 0, picture, textFrame(3, "TIT2", 0, "Title"));
+        try (FileChannel channel = open(tag)) {
+            ID3v2FrameIndex index = ID3v2FrameIndex.open(channel);
+
+            assertEquals("Title", index.text("TIT2"));
+            assertTrue(index.contains("APIC"));
+            assertFalse(index.contains("TPE1"));
+        }
+    }
+
+    @Test
+    public void readsFramesOfTagCutAtEndOfPart() throws IOException {
+        byte[] tag = id3v2Tag(3, 0, 0, textFrame(3, "TIT2", 0, "Title"), frame(3, "APIC", 0, new byte[5000]));
+        byte[] part = Arrays.copyOf(tag, TAG_HEADER_LENGTH + 100); // rest of tag is at next part
+        try (FileChannel channel = open(part)) {
+            ID3v2FrameIndex index = ID3v2FrameIndex.open(channel);
+
+            assertEquals("Title", index.text("TIT2"));
+            assertNull(index.text("TPE1"));
+        }
+    }
+
+    @Test
+    public void readsHeaderFromGivenHead() throws IOException {
+        byte[] tag = id3v2Tag(3, 0, 0, textFrame(3, "TIT2", 0, "Title"));
+        try (FileChannel channel = open(tag)) {
+            ID3v2FrameIndex index = ID3v2FrameIndex.open(channel, ByteBuffer.wrap(tag, 0, 16));
+
+            assertEquals("Title", index.text("TIT2"));
+        }
+    }
+
+    @Test
+    public void rejectsFilesWithoutSupportedTag() throws IOException {
+        byte[] version5 = id3v2Tag(5, 0, 0, textFrame(4, "TIT2", 0, "Title"));
+        try (FileChannel unsupported = open(version5); FileChannel audio = open(Fixtures.mpegFrames(2));
+             FileChannel tiny = open(new byte[]{'I', 'D', '3'})) {
+            assertNull(ID3v2FrameIndex.open(unsupported));
+            assertNull(ID3v2FrameIndex.open(audio));
+            assertNull(ID3v2FrameIndex.open(tiny));
+        }
+    }
+}
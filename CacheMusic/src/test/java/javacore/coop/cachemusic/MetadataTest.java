@@ -0,0 +1,136 @@
+package javacore.coop.cachemusic;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static javacore.coop.cachemusic.Fixtures.concat;
+import static javacore.coop.cachemusic.Fixtures.frame;
+import static javacore.coop.cachemusic.Fixtures.id3v1Tag;
+import static javacore.coop.cachemusic.Fixtures.id3v2Tag;
+import static javacore.coop.cachemusic.Fixtures.mpegFrames;
+import static javacore.coop.cachemusic.Fixtures.textFrame;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MetadataTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path write(byte[] bytes) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, bytes);
+        return file;
+    }
+
+    @Test
+    public void readsTitleAndArtistOfID3v23Tag() throws IOException {
+        byte[] tag = id3v2Tag(3, 0, 64,
+                textFrame(3, "TALB", 0, "Album"),
+                textFrame(3, "TIT2", 0, "Title"),
+                textFrame(3, "TPE1", 1, "Artist é"));
+        Metadata meta = Metadata.readID3v23(write(concat(tag, mpegFrames(2))).toString());
+
+        assertEquals(Metadata.FormatName.ID3v23, meta.getFormat());
+        assertEquals(3, meta.getVersion());
+        assertEquals("Title", meta.getTitle());
+        assertEquals("Artist é", meta.getArtist());
+    }
+
+    @Test
+    public void decodesEveryTextEncoding() throws IOException {
+        String[] texts = {"Latin é", "Utf16 Ж", "Utf16be Ж", "Utf8 Ж"};
+        for (int encoding = 0; encoding < texts.length; encoding++) {
+            byte[] tag = id3v2Tag(4, 0, 0, textFrame(4, "TIT2", encoding, texts[encoding] + "\u0000second value"));
+            Metadata meta = Metadata.readID3v23(write(tag).toString());
+
+            assertEquals(texts[encoding], meta.getTitle());
+        }
+    }
+
+    @Test
+    public void readsID3v22FramesByTheirShortIDs() throws IOException {
+        byte[] tag = id3v2Tag(2, 0, 16, textFrame(2, "TT2", 0, "Short"), textFrame(2, "TP1", 0, "Old"));
+        Metadata meta = Metadata.readID3v23(write(tag).toString());
+
+        assertEquals(2, meta.getVersion());
+        assertEquals("Short", meta.getTitle());
+        assertEquals("Old", meta.getArtist());
+    }
+
+    @Test
+    public void stopsAtPadding() throws IOException {
+        // frame after padding is not a frame of tag
+        byte[] tag = id3v2Tag(3, 0, 32, textFrame(3, "TIT2", 0, "Title"));
+        byte[] hidden = textFrame(3, "TPE1", 0, "Hidden");
+        System.arraycopy(hidden, 0, tag, tag.length - hidden.length, hidden.length);
+        Metadata meta = Metadata.readID3v23(write(tag).toString());
+
+        assertEquals("Title", meta.getTitle());
+        assertNull(meta.getArtist());
+    }
+
+    @Test
+    public void stopsAtFrameLargerThanTag() throws IOException {
+        byte[] broken = frame(3, "TPE1", 0, new byte[]{0, 'A'});
+        broken[7] = 100; // size runs past the end of tag
+        byte[] tag = id3v2Tag(3, 0, 0, textFrame(3, "TIT2", 0, "Title"), broken);
+        Metadata meta = Metadata.readID3v23(write(tag).toString());
+
+        assertEquals("Title", meta.getTitle());
+        assertNull(meta.getArtist());
+    }
+
+    @Test
+    public void fileWithoutTagHasNoFormat() throws IOException {
+        Metadata meta = Metadata.readID3v23(write(mpegFrames(2)).toString());
+
+        assertEquals(Metadata.FormatName.NONE, meta.getFormat());
+        assertNull(meta.getTitle());
+    }
+
+    @Test
+    public void detectsFormatByFirstAndLastBytes() {
+        byte[] id3v2 = id3v2Tag(3, 0, 0, textFrame(3, "TIT2", 0, "Title"));
+        byte[] id3v1 = id3v1Tag("Title", "Artist");
+
+        assertEquals(Metadata.FormatName.ID3v23, Metadata.detectFormatAtStart(ByteBuffer.wrap(id3v2)));
+        assertEquals(Metadata.FormatName.ID3v1, Metadata.detectFormatAtStart(ByteBuffer.wrap(id3v1)));
+        assertEquals(Metadata.FormatName.NONE, Metadata.detectFormatAtStart(ByteBuffer.wrap(mpegFrames(1))));
+        assertEquals(Metadata.FormatName.ID3v1, Metadata.detectFormatAtEnd(ByteBuffer.wrap(id3v1)));
+        assertEquals(Metadata.FormatName.NONE, Metadata.detectFormatAtEnd(ByteBuffer.wrap(new byte[10])));
+    }
+
+    @Test
+    public void parsesID3v1Tag() {
+        ByteBuffer header = ByteBuffer.wrap(id3v1Tag("Title", "Artist"));
+        Metadata meta = Metadata.parseID3v1(header);
+
+        assertTrue(Metadata.isID3v1(header));
+        assertEquals(0, header.position());
+        assertEquals(Metadata.FormatName.ID3v1, meta.getFormat());
+        assertEquals("Title", meta.getTitle().trim());
+        assertEquals("Artist", meta.getArtist().trim());
+        assertFalse(Metadata.isID3v1(ByteBuffer.wrap(mpegFrames(1))));
+    }
+
+    @Test
+    public void readsTagOfFileThroughCache() throws IOException {
+        Path file = write(concat(id3v2Tag(4, 0, 0, textFrame(4, "TIT2", 0, "Title")), mpegFrames(2)));
+
+        assertEquals("Title", Metadata.read(file.toString()).getTitle());
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void failedReadIsReportedAsIOError() {
+        Metadata.read(folder.getRoot().toPath().resolve("missing").toString());
+    }
+}
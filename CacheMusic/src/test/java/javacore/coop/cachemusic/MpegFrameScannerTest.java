@@ -0,0 +1,113 @@
+package javacore.coop.cachemusic;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static javacore.coop.cachemusic.Fixtures.MPEG_FRAME_LENGTH;
+import static javacore.coop.cachemusic.Fixtures.MPEG_FRAME_SECONDS;
+import static javacore.coop.cachemusic.Fixtures.concat;
+import static javacore.coop.cachemusic.Fixtures.id3v1Tag;
+import static javacore.coop.cachemusic.Fixtures.id3v2Tag;
+import static javacore.coop.cachemusic.Fixtures.mpegFrames;
+import static javacore.coop.cachemusic.Fixtures.textFrame;
+import static org.junit.Assert.assertEquals;
+
+public class MpegFrameScannerTest {
+    private final static double SECONDS_DELTA = 1e-9;
+
+    private static AudioReport scan(byte[] track, int chunkSize) {
+        MpegFrameScanner scanner = new MpegFrameScanner();
+        for (int start = 0; start < track.length; start += chunkSize) {
+            ByteBuffer chunk = ByteBuffer.wrap(track, start, Math.min(chunkSize, track.length - start));
+            scanner.scan(chunk);
+            assertEquals(0, chunk.remaining());
+        }
+        return scanner.finish();
+    }
+
+    @Test
+    public void countsCompleteFrames() {
+        AudioReport report = scan(mpegFrames(10), 4096);
+
+        assertEquals(AudioReport.Status.OK, report.getStatus());
+        assertEquals(10, report.getFrames());
+        assertEquals(10 * MPEG_FRAME_LENGTH, report.getAudioBytes());
+        assertEquals(10 * MPEG_FRAME_SECONDS, report.getDurationSeconds(), SECONDS_DELTA);
+        assertEquals(128, report.getBitrateKbps());
+    }
+
+    @Test
+    public void skipsID3v2TagAtStartAndID3v1TagAtEnd() {
+        byte[] tag = id3v2Tag(3, 0, 100, textFrame(3, "TIT2", 0, "Title"));
+        byte[] track = concat(tag, mpegFrames(5), id3v1Tag("Title", "Artist"));
+        AudioReport report = scan(track, 4096);
+
+        assertEquals(AudioReport.Status.OK, report.getStatus());
+        assertEquals(5, report.getFrames());
+        assertEquals(0, report.getLostBytes());
+    }
+
+    @Test
+    public void resultDoesNotDependOnChunks() {
+        byte[] tag = id3v2Tag(4, 0, 10, textFrame(4, "TIT2", 0, "Title"));
+        byte[] track = concat(tag, mpegFrames(7), new byte[]{1, 2, 3}, mpegFrames(3));
+        AudioReport whole = scan(track, track.length);
+        for (int chunkSize : new int[]{1, 3, 10, 417, 1000}) {
+            AudioReport chunked = scan(track, chunkSize);
+
+            assertEquals(whole.getFrames(), chunked.getFrames());
+            assertEquals(whole.getLostBytes(), chunked.getLostBytes());
+            assertEquals(whole.getMissingBytes(), chunked.getMissingBytes());
+        }
+    }
+
+    @Test
+    public void reportsTruncatedLastFrame() {
+        byte[] audio = mpegFrames(4);
+        AudioReport report = scan(Arrays.copyOf(audio, audio.length - 100), 4096);
+
+        assertEquals(AudioReport.Status.TRUNCATED, report.getStatus());
+        assertEquals(4, report.getFrames());
+        assertEquals(100, report.getMissingBytes());
+    }
+
+    @Test
+    public void reportsTrackCutAtHeaderOfNextFrame() {
+        byte[] audio = mpegFrames(4);
+        AudioReport report = scan(Arrays.copyOf(audio, 3 * MPEG_FRAME_LENGTH + 2), 4096);
+
+        assertEquals(AudioReport.Status.TRUNCATED, report.getStatus());
+        assertEquals(3, report.getFrames());
+        assertEquals(2, report.getMissingBytes());
+    }
+
+    @Test
+    public void reportsBytesBetweenFramesAsLost() {
+        byte[] junk = {0x11, 0x22, 0x33, 0x44, 0x55};
+        AudioReport report = scan(concat(mpegFrames(3), junk, mpegFrames(3)), 4096);
+
+        assertEquals(AudioReport.Status.CORRUPTED, report.getStatus());
+        assertEquals(6, report.getFrames());
+        assertEquals(junk.length, report.getLostBytes());
+    }
+
+    @Test
+    public void rejectsFrameOfAnotherStream() {
+        byte[] other = mpegFrames(1);
+        other[2] = (byte) 0x94; // 48000 Hz instead of 44100 Hz
+        AudioReport report = scan(concat(mpegFrames(2), other, mpegFrames(2)), 4096);
+
+        assertEquals(AudioReport.Status.CORRUPTED, report.getStatus());
+        assertEquals(4, report.getFrames());
+    }
+
+    @Test
+    public void reportsNoAudio() {
+        AudioReport report = scan(new byte[1000], 4096);
+
+        assertEquals(AudioReport.Status.NO_AUDIO, report.getStatus());
+        assertEquals(0, report.getBitrateKbps());
+    }
+}
@@ -0,0 +1,95 @@
+package javacore.coop.cachemusic;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class OutputCatalogTest {
+    private final static String MP3 = ".mp3";
+    private final static int THREADS = 8;
+    private final static int RESERVATIONS = 100;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void namesDifferingOnlyByCaseCollide() throws IOException {
+        OutputCatalog catalog = OutputCatalog.of(folder.newFolder("output").toPath());
+
+        assertEquals("Song.mp3", catalog.reserve("Song", MP3));
+        assertEquals("SONG1.mp3", catalog.reserve("SONG", MP3));
+        assertEquals("song2.mp3", catalog.reserve("song", MP3));
+        assertEquals("Song3.MP3", catalog.reserve("Song", ".MP3"));
+    }
+
+    @Test
+    public void namesAtDiskAreTaken() throws IOException {
+        Path output = folder.newFolder("output").toPath();
+        Files.write(output.resolve("Track.mp3"), new byte[1]);
+        Files.write(output.resolve("track1.MP3"), new byte[1]);
+        Files.write(output.resolve("Other.txt"), new byte[1]);
+        OutputCatalog catalog = OutputCatalog.of(output);
+
+        assertEquals("Track2.mp3", catalog.reserve("Track", MP3));
+        assertEquals("Other.mp3", catalog.reserve("Other", MP3));
+        assertEquals("OTHER1.TXT", catalog.reserve("OTHER", ".TXT"));
+    }
+
+    @Test
+    public void releasedNameIsReservedAgain() throws IOException {
+        OutputCatalog catalog = OutputCatalog.of(folder.newFolder("output").toPath());
+        assertEquals("Song.mp3", catalog.reserve("Song", MP3));
+        assertEquals("Song1.mp3", catalog.reserve("Song", MP3));
+
+        catalog.release("SONG.mp3");
+        assertEquals("Song.mp3", catalog.reserve("Song", MP3));
+        // numbers only increase: released numbered name is not given again
+        catalog.release("Song1.mp3");
+        assertEquals("Song2.mp3", catalog.reserve("Song", MP3));
+    }
+
+    @Test
+    public void concurrentReservationsAreUnique() throws Exception {
+        OutputCatalog catalog = OutputCatalog.of(folder.newFolder("output").toPath());
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        Set<String> names = new HashSet<>();
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    List<String> reserved = new ArrayList<>();
+                    for (int j = 0; j < RESERVATIONS; j++) {
+                        reserved.add(catalog.reserve(j % 2 == 0 ? "Song" : "SONG", MP3).toLowerCase(Locale.ROOT));
+                    }
+                    return reserved;
+                }));
+            }
+            start.countDown();
+            for (Future<List<String>> future : futures) {
+                names.addAll(future.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(THREADS * RESERVATIONS, names.size());
+    }
+}
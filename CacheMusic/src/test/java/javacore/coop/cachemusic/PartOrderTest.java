@@ -0,0 +1,90 @@
+package javacore.coop.cachemusic;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class PartOrderTest {
+    private final static Path FOLDER = Paths.get("cache").toAbsolutePath();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<Path> paths(String... fileNames) {
+        List<Path> paths = new ArrayList<>();
+        for (String fileName : fileNames) {
+            paths.add(FOLDER.resolve(fileName));
+        }
+        return paths;
+    }
+
+    @Test
+    public void sortsLikeArraysSort() {
+        Random random = new Random(20161018);
+        for (int size : new int[]{0, 1, 2, 255, 256, 257, 10000}) {
+            long[] numbers = new long[size];
+            List<Path> parts = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                // every byte of number varies, so no pass of sort is skipped
+                numbers[i] = random.nextInt() & 0xFFFF_FFFFL;
+                parts.add(FOLDER.resolve(PartOrder.fileName(numbers[i])));
+            }
+            Arrays.sort(numbers);
+            PartOrder order = PartOrder.of(FOLDER, parts);
+
+            assertEquals(size, order.size());
+            for (int i = 0; i < size; i++) {
+                assertEquals(PartOrder.fileName(numbers[i]), order.get(i).getFileName().toString());
+            }
+        }
+    }
+
+    @Test
+    public void sortsByNumberNotByName() {
+        PartOrder order = PartOrder.of(FOLDER, paths("f_00000a", "f_1000000", "f_000009", "f_0000ff", "f_000100"));
+
+        assertEquals(paths("f_000009", "f_00000a", "f_0000ff", "f_000100", "f_1000000"), order);
+    }
+
+    @Test
+    public void keepsListingOrderOfEqualNumbers() {
+        PartOrder order = PartOrder.of(FOLDER, paths("f_00000B", "f_000001", "f_00000b", "f_00000a"));
+
+        assertEquals(paths("f_000001", "f_00000a", "f_00000B", "f_00000b"), order);
+    }
+
+    @Test
+    public void skipsFilesWithoutNumberOfPart() {
+        PartOrder order = PartOrder.of(FOLDER, paths("index", "data_1", "f_", "f_00000g", "f_123456789", "f_000002"));
+
+        assertEquals(paths("f_000002"), order);
+        assertEquals(-1, PartOrder.parseNumber("f_x"));
+        assertEquals(0xa3f1, PartOrder.parseNumber("f_00a3f1"));
+    }
+
+    @Test
+    public void listsPartsOfCacheFolder() throws IOException {
+        Path cache = folder.getRoot().toPath();
+        List<String> fileNames = Arrays.asList("f_000003", "f_000001", "f_000002", "index", "data_0");
+        Collections.shuffle(fileNames, new Random(7));
+        for (String fileName : fileNames) {
+            Files.createFile(cache.resolve(fileName));
+        }
+        PartOrder order = PartOrder.list(cache);
+
+        assertEquals(Arrays.asList(cache.resolve("f_000001"), cache.resolve("f_000002"), cache.resolve("f_000003")),
+                order);
+    }
+}
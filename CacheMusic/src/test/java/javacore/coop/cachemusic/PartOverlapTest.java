@@ -0,0 +1,132 @@
+package javacore.coop.cachemusic;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static javacore.coop.cachemusic.Fixtures.concat;
+import static javacore.coop.cachemusic.Fixtures.mpegFrames;
+import static javacore.coop.cachemusic.Fixtures.noise;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PartOverlapTest {
+    private final static int MIN = PartOverlap.MIN_OVERLAP_BYTES;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static int find(byte[] previous, byte[] next) {
+        return PartOverlap.find(ByteBuffer.wrap(previous), ByteBuffer.wrap(next));
+    }
+
+    @Test
+    public void findsRepeatedEndOfPreviousPart() {
+        byte[] track = noise(20000, 1);
+        byte[] previous = Arrays.copyOf(track, 12000);
+        byte[] next = Arrays.copyOfRange(track, 12000 - MIN - 1000, track.length);
+
+        assertEquals(MIN + 1000, find(previous, next));
+    }
+
+    @Test
+    public void findsNextPartContainedInPreviousOne() {
+        byte[] track = noise(20000, 2);
+        byte[] next = Arrays.copyOfRange(track, 20000 - MIN, track.length);
+
+        assertEquals(MIN, find(track, next));
+    }
+
+    @Test
+    public void adjacentPartsDoNotOverlap() {
+        byte[] track = noise(20000, 3);
+
+        assertEquals(0, find(Arrays.copyOf(track, 10000), Arrays.copyOfRange(track, 10000, track.length)));
+    }
+
+    @Test
+    public void shortOverlapIsNotTrimmed() {
+        byte[] track = noise(20000, 4);
+        byte[] next = Arrays.copyOfRange(track, 10000 - (MIN - 1), track.length);
+
+        assertEquals(0, find(Arrays.copyOf(track, 10000), next));
+        assertEquals(0, find(new byte[10], new byte[10]));
+    }
+
+    @Test
+    public void repeatingContentIsNotTrimmed() {
+        // silence matches at every length: real overlap can't be told
+        byte[] silence = new byte[3 * MIN];
+
+        assertEquals(0, find(concat(noise(1000, 5), silence), concat(silence, noise(1000, 6))));
+    }
+
+    private List<Path> parts(byte[]... contents) throws IOException {
+        List<Path> parts = new ArrayList<>();
+        for (byte[] content : contents) {
+            Path part = folder.newFile().toPath();
+            Files.write(part, content);
+            parts.add(part);
+        }
+        return parts;
+    }
+
+    @Test
+    public void copyTrimsOverlapsAndHashesWrittenBytes() throws IOException {
+        byte[] track = mpegFrames(40);
+        byte[] first = Arrays.copyOf(track, 8000);
+        byte[] second = Arrays.copyOfRange(track, 8000 - MIN - 10, 14000);
+        byte[] third = Arrays.copyOfRange(track, 14000, track.length);
+        MpegFrameScanner audio = new MpegFrameScanner();
+        CRC32 crc = new CRC32();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        TrackContent content = TrackContent.copy(parts(first, second, third), audio, crc, Channels.newChannel(out));
+
+        assertArrayEquals(track, out.toByteArray());
+        assertEquals(3, content.getPartsRead());
+        assertEquals(track.length, content.getSize());
+        assertEquals(MIN + 10, content.getTrimmed());
+        assertEquals(TrackIndex.toHex(TrackIndex.newDigest().digest(track)), content.getHash());
+        CRC32 expected = new CRC32();
+        expected.update(track);
+        assertEquals(expected.getValue(), crc.getValue());
+        assertEquals(40, audio.finish().getFrames());
+    }
+
+    @Test
+    public void partsAroundUnreadablePartAreNotTrimmed() throws IOException {
+        byte[] track = noise(20000, 8);
+        List<Path> parts = parts(Arrays.copyOf(track, 12000), Arrays.copyOfRange(track, 12000 - MIN, track.length));
+        parts.add(1, folder.getRoot().toPath().resolve("evicted"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        TrackContent content = TrackContent.copy(parts, null, null, Channels.newChannel(out));
+
+        assertEquals(2, content.getPartsRead());
+        assertEquals(0, content.getTrimmed());
+        assertEquals(track.length + MIN, out.size());
+    }
+
+    @Test
+    public void trackWithoutReadablePartsHasNoHash() throws IOException {
+        List<Path> parts = Collections.singletonList(folder.getRoot().toPath().resolve("evicted"));
+        TrackContent content = TrackContent.copy(parts, null, null, null);
+
+        assertEquals(0, content.getPartsRead());
+        assertNull(content.getHash());
+    }
+}
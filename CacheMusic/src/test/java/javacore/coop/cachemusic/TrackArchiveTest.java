@@ -0,0 +1,265 @@
+package javacore.coop.cachemusic;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static javacore.coop.cachemusic.Fixtures.mpegFrames;
+import static javacore.coop.cachemusic.Fixtures.noise;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TrackArchiveTest {
+    private final static int TAR_BLOCK_SIZE = 512;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path cacheFolder;
+    private Path outputFolder;
+    private int partNumber = 0;
+
+    @Before
+    public void makeFolders() throws IOException {
+        cacheFolder = folder.newFolder("cache").toPath();
+        outputFolder = folder.newFolder("output").toPath();
+    }
+
+    /**
+     * Writes bytes as consecutive parts of cache.
+     */
+    private List<Path> parts(byte[]... contents) throws IOException {
+        List<Path> parts = new ArrayList<>();
+        for (byte[] content : contents) {
+            Path part = cacheFolder.resolve(PartOrder.fileName(++partNumber));
+            Files.write(part, content);
+            parts.add(part);
+        }
+        return parts;
+    }
+
+    /**
+     * Adds three tracks, one of them twice, and a track, which parts can't be read.
+     *
+     * @return Expected entries: name - content
+     */
+    private Map<String, byte[]> fill(TrackArchive archive) throws IOException {
+        byte[] first = mpegFrames(30);
+        byte[] second = noise(10000, 1);
+        byte[] third = noise(3000, 2);
+        String longName = "Very long artist name, that doesn't fit into name field of tar header - "
+                + "and a long title of the song too";
+        Map<String, byte[]> expected = new LinkedHashMap<>();
+
+        BuildResult result = archive.add(parts(Arrays.copyOf(first, 5000), Arrays.copyOfRange(first, 5000,
+                first.length)), "Artist - Title");
+        expected.put("Artist - Title.mp3", first);
+        assertEquals(first.length, result.getBytesWritten());
+        assertEquals(AudioReport.Status.OK, result.getAudio().getStatus());
+
+        List<Path> secondParts = parts(second);
+        secondParts.add(1, cacheFolder.resolve("f_ffffff")); // evicted part is skipped
+        archive.add(secondParts, "Artist - Title");
+        expected.put("Artist - Title1.mp3", second);
+
+        BuildResult duplicate = archive.add(parts(Arrays.copyOf(first, 100), Arrays.copyOfRange(first, 100,
+                first.length)), "Another name");
+        assertTrue(duplicate.isDuplicate());
+        assertEquals(archive.getFile().resolve("Artist - Title.mp3"), duplicate.getTrack());
+
+        try {
+            archive.add(Collections.singletonList(cacheFolder.resolve("f_fffffe")), "Lost");
+            fail("Track without readable parts must be rejected");
+        } catch (IOException e) {
+            // expected
+        }
+
+        archive.add(parts(third), longName);
+        expected.put(longName + ".mp3", third);
+
+        assertEquals(expected.size(), archive.getTracks());
+        return expected;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void zipIsReadByCentralDirectory() throws IOException {
+        Path file = outputFolder.resolve("tracks.zip");
+        Map<String, byte[]> expected;
+        try (TrackArchive archive = TrackArchive.create(file)) {
+            assertEquals(TrackArchive.Format.ZIP, archive.getFormat());
+            expected = fill(archive);
+            assertFalse(Files.exists(file)); // archive appears only when it is closed
+        }
+        assertEquals(Collections.singletonList(file), listOutputFolder());
+
+        try (ZipFile zip = new ZipFile(file.toFile(), StandardCharsets.UTF_8)) {
+            List<String> names = new ArrayList<>();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                byte[] content = expected.get(entry.getName());
+                CRC32 crc = new CRC32();
+                crc.update(content);
+
+                names.add(entry.getName());
+                assertEquals(ZipEntry.STORED, entry.getMethod());
+                assertEquals(content.length, entry.getSize());
+                assertEquals(content.length, entry.getCompressedSize());
+                assertEquals(crc.getValue(), entry.getCrc());
+                try (InputStream in = zip.getInputStream(entry)) {
+                    assertArrayEquals(content, readAll(in));
+                }
+            }
+            assertEquals(new ArrayList<>(expected.keySet()), names);
+        }
+    }
+
+    @Test
+    public void zipIsReadByLocalHeaders() throws IOException {
+        Path file = outputFolder.resolve("tracks.zip");
+        Map<String, byte[]> expected;
+        try (TrackArchive archive = TrackArchive.create(file)) {
+            expected = fill(archive);
+        }
+
+        // streaming reader trusts local headers: their sizes and CRC must be completed
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(file), StandardCharsets.UTF_8)) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                names.add(entry.getName());
+                assertArrayEquals(expected.get(entry.getName()), readAll(in));
+            }
+        }
+        assertEquals(new ArrayList<>(expected.keySet()), names);
+    }
+
+    @Test
+    public void tarHasUstarHeadersAndLongNames() throws IOException {
+        Path file = outputFolder.resolve("tracks.tar");
+        Map<String, byte[]> expected;
+        try (TrackArchive archive = TrackArchive.create(file)) {
+            assertEquals(TrackArchive.Format.TAR, archive.getFormat());
+            expected = fill(archive);
+        }
+        assertEquals(Collections.singletonList(file), listOutputFolder());
+
+        byte[] tar = Files.readAllBytes(file);
+        assertEquals(0, tar.length % TAR_BLOCK_SIZE);
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        String longName = null;
+        int position = 0;
+        while (!isZeroBlock(tar, position)) {
+            assertEquals("ustar", new String(tar, position + 257, 5, StandardCharsets.US_ASCII));
+            assertEquals(checksum(tar, position), octal(tar, position + 148, 8));
+            String name = longName != null ? longName : string(tar, position, 100);
+            int size = (int) octal(tar, position + 124, 12);
+            byte type = tar[position + 156];
+            byte[] content = Arrays.copyOfRange(tar, position + TAR_BLOCK_SIZE, position + TAR_BLOCK_SIZE + size);
+            position += TAR_BLOCK_SIZE + (size + TAR_BLOCK_SIZE - 1) / TAR_BLOCK_SIZE * TAR_BLOCK_SIZE;
+            if (type == 'L') {
+                longName = string(content, 0, content.length);
+                continue;
+            }
+
+            assertEquals('0', type);
+            entries.put(name, content);
+            longName = null;
+        }
+        assertTrue(isZeroBlock(tar, position + TAR_BLOCK_SIZE)); // end of archive is two zero blocks
+        assertEquals(tar.length, position + 2 * TAR_BLOCK_SIZE);
+
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(entries.keySet()));
+        for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+            assertArrayEquals(entry.getValue(), entries.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void discardedArchiveLeavesNoFile() throws IOException {
+        Path file = outputFolder.resolve("tracks.zip");
+        TrackArchive archive = TrackArchive.create(file);
+        archive.add(parts(noise(1000, 4)), "Track");
+        archive.discard();
+
+        assertEquals(Collections.emptyList(), listOutputFolder());
+    }
+
+    @Test
+    public void dosTimeHasTwoSecondsPrecision() {
+        int time = TrackArchive.dosTime(LocalDateTime.of(2016, 10, 18, 13, 45, 31));
+
+        assertEquals((2016 - 1980) << 9 | 10 << 5 | 18, time >>> 16);
+        assertEquals(13 << 11 | 45 << 5 | 15, time & 0xFFFF);
+    }
+
+    private List<Path> listOutputFolder() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> list = Files.list(outputFolder)) {
+            list.forEach(files::add);
+        }
+        return files;
+    }
+
+    private static boolean isZeroBlock(byte[] tar, int position) {
+        for (int i = position; i < position + TAR_BLOCK_SIZE; i++) {
+            if (tar[i] != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Sums header bytes, counting checksum field as spaces.
+     */
+    private static long checksum(byte[] tar, int position) {
+        long sum = 0;
+        for (int i = 0; i < TAR_BLOCK_SIZE; i++) {
+            sum += i >= 148 && i < 156 ? ' ' : tar[position + i] & 0xFF;
+        }
+        return sum;
+    }
+
+    private static long octal(byte[] bytes, int offset, int length) {
+        return Long.parseLong(string(bytes, offset, length).trim(), 8);
+    }
+
+    private static String string(byte[] bytes, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && bytes[end] != 0) end++;
+        return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,130 @@
+package javacore.coop.cachemusic;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static javacore.coop.cachemusic.Fixtures.concat;
+import static javacore.coop.cachemusic.Fixtures.id3v1Tag;
+import static javacore.coop.cachemusic.Fixtures.id3v2Tag;
+import static javacore.coop.cachemusic.Fixtures.mpegFrames;
+import static javacore.coop.cachemusic.Fixtures.syncsafe;
+import static javacore.coop.cachemusic.Fixtures.textFrame;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TrackFilterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CachePart probe(byte[] content) throws IOException {
+        Path part = folder.newFile().toPath();
+        Files.write(part, content);
+        return PartScanner.probe(part);
+    }
+
+    private CachePart taggedPart(int version, String artist, String title) throws IOException {
+        String titleId = version == 2 ? "TT2" : "TIT2";
+        String artistId = version == 2 ? "TP1" : "TPE1";
+        byte[] tag = id3v2Tag(version, 0, 16, textFrame(version, titleId, 0, title),
+                textFrame(version, artistId, 0, artist));
+        return probe(concat(tag, mpegFrames(3)));
+    }
+
+    private static CachePart untaggedPart(Path path) {
+        return new CachePart(path, 1000, 0, Metadata.FormatName.NONE, Metadata.FormatName.NONE, (String) null);
+    }
+
+    /**
+     * Makes song of untagged part, followed by part.
+     */
+    private SongGroup song(CachePart part) {
+        return new SongGroup(Arrays.asList(untaggedPart(folder.getRoot().toPath().resolve("untagged")), part));
+    }
+
+    @Test
+    public void globMatchesWholeValueIgnoringCase() throws IOException {
+        SongGroup song = song(taggedPart(3, "The Artist", "Title (Live).mp3"));
+
+        assertTrue(new TrackFilter("the *", null, null).accepts(song));
+        assertTrue(new TrackFilter("glob:THE ARTIS?", null, null).accepts(song));
+        assertFalse(new TrackFilter("Artist", null, null).accepts(song));
+        assertFalse(new TrackFilter("The Artist?", null, null).accepts(song));
+        // characters of regular expressions are taken literally
+        assertTrue(new TrackFilter(null, "title (live).mp3", null).accepts(song));
+        assertFalse(new TrackFilter(null, "Title (Live)Xmp3", null).accepts(song));
+    }
+
+    @Test
+    public void regexMatchesWholeValueIgnoringCase() throws IOException {
+        SongGroup song = song(taggedPart(4, "The Artist", "Title"));
+
+        assertTrue(new TrackFilter("regex:(the )?ARTIST", null, null).accepts(song));
+        assertTrue(new TrackFilter(null, "regex:t.t.e", null).accepts(song));
+        assertFalse(new TrackFilter("regex:Artist", null, null).accepts(song));
+    }
+
+    @Test
+    public void incorrectRegexIsRejected() {
+        try {
+            new TrackFilter(null, "regex:(unclosed", null);
+            fail("Incorrect regular expression must be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void formatIsRealVersionOfTag() throws IOException {
+        assertEquals("ID3v22", TrackFilter.formatName(null, taggedPart(2, "Artist", "Title").getMetadata()));
+        assertEquals("ID3v23", TrackFilter.formatName(null, taggedPart(3, "Artist", "Title").getMetadata()));
+        assertEquals("ID3v24", TrackFilter.formatName(null, taggedPart(4, "Artist", "Title").getMetadata()));
+        assertEquals("ID3v1", TrackFilter.formatName(null,
+                probe(concat(mpegFrames(3), id3v1Tag("Title", "Artist"))).getMetadata()));
+
+        SongGroup song = song(taggedPart(2, "Artist", "Title"));
+        assertTrue(new TrackFilter(null, null, "id3v22").accepts(song));
+        assertTrue(new TrackFilter(null, null, "ID3v2*").accepts(song));
+        assertFalse(new TrackFilter(null, null, "ID3v23").accepts(song));
+        assertFalse(new TrackFilter(null, null, "ID3v1").accepts(song));
+    }
+
+    @Test
+    public void appendedID3v2TagIsID3v24() throws IOException {
+        byte[] tag = id3v2Tag(4, 0b0001_0000, 0, textFrame(4, "TIT2", 0, "Title"));
+        byte[] footer = concat(new byte[]{'3', 'D', 'I', 4, 0, 0b0001_0000}, syncsafe(tag.length - 10));
+        CachePart part = probe(concat(mpegFrames(3), tag, footer));
+
+        assertEquals(Metadata.FormatName.ID3v2, part.getFormatAtEnd());
+        assertTrue(new TrackFilter(null, null, "ID3v2*").accepts(song(part)));
+        assertTrue(new TrackFilter(null, null, "ID3v24").accepts(song(part)));
+    }
+
+    @Test
+    public void partRestoredWithoutMetadataIsReadAgain() throws IOException {
+        CachePart probed = taggedPart(3, "Artist", "Title");
+        CachePart restored = new CachePart(probed.getPath(), probed.getSize(), probed.getLastModified(),
+                probed.getFormatAtStart(), probed.getFormatAtEnd(), probed.getSongName());
+
+        assertTrue(new TrackFilter("artist", null, "ID3v23").accepts(song(restored)));
+    }
+
+    @Test
+    public void untaggedSongHasEmptyArtistAndTitle() {
+        SongGroup song = new SongGroup(Collections.singletonList(untaggedPart(folder.getRoot().toPath())));
+
+        assertTrue(TrackFilter.ALL.accepts(song));
+        assertTrue(new TrackFilter("*", "*", "none").accepts(song));
+        assertTrue(new TrackFilter("regex:", null, null).accepts(song));
+        assertFalse(new TrackFilter("?*", null, null).accepts(song));
+        assertFalse(new TrackFilter(null, null, "ID3*").accepts(song));
+    }
+}
@@ -0,0 +1,160 @@
+package javacore.coop.cachemusic;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static javacore.coop.cachemusic.Fixtures.mpegFrames;
+import static javacore.coop.cachemusic.Fixtures.noise;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TrackIndexTest {
+    private final static int ASSEMBLERS = 8;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path cacheFolder;
+    private Path outputFolder;
+    private int partNumber = 0;
+
+    @Before
+    public void makeFolders() throws IOException {
+        cacheFolder = folder.newFolder("cache").toPath();
+        outputFolder = folder.newFolder("output").toPath();
+    }
+
+    private List<Path> parts(byte[] track) throws IOException {
+        List<Path> parts = new ArrayList<>();
+        for (byte[] content : Arrays.asList(Arrays.copyOf(track, track.length / 2),
+                Arrays.copyOfRange(track, track.length / 2, track.length))) {
+            Path part = cacheFolder.resolve(PartOrder.fileName(++partNumber));
+            Files.write(part, content);
+            parts.add(part);
+        }
+        return parts;
+    }
+
+    private static String hash(byte[] content) {
+        return TrackIndex.toHex(TrackIndex.newDigest().digest(content));
+    }
+
+    private List<String> listOutputFolder() throws IOException {
+        try (Stream<Path> list = Files.list(outputFolder)) {
+            return list.map(path -> path.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void indexIsReplayedAfterRestart() throws IOException {
+        byte[] first = mpegFrames(20);
+        byte[] second = mpegFrames(21);
+        TrackIndex index = TrackIndex.load(outputFolder);
+        FileBuilder.assemble(parts(first), outputFolder, "First", index);
+        FileBuilder.assemble(parts(second), outputFolder, "Second", index);
+        assertEquals(2, index.getSize());
+
+        TrackIndex restarted = TrackIndex.load(outputFolder);
+        assertEquals(2, restarted.getSize());
+        assertEquals("First.mp3", restarted.getTrack(hash(first)));
+        assertEquals("Second.mp3", restarted.getTrack(hash(second)));
+
+        BuildResult duplicate = FileBuilder.assemble(parts(first), outputFolder, "Copy", restarted);
+        assertTrue(duplicate.isDuplicate());
+        assertEquals(outputFolder.toAbsolutePath().resolve("First.mp3"), duplicate.getTrack());
+    }
+
+    @Test
+    public void deletedTrackDoesNotOwnItsHash() throws IOException {
+        byte[] track = mpegFrames(20);
+        FileBuilder.assemble(parts(track), outputFolder, "First", TrackIndex.load(outputFolder));
+        Files.delete(outputFolder.resolve("First.mp3"));
+
+        TrackIndex restarted = TrackIndex.load(outputFolder);
+        assertNull(restarted.getTrack(hash(track)));
+        BuildResult result = FileBuilder.assemble(parts(track), outputFolder, "Again", restarted);
+        assertFalse(result.isDuplicate());
+
+        // later line of index replaces earlier one
+        assertEquals("Again.mp3", TrackIndex.load(outputFolder).getTrack(hash(track)));
+    }
+
+    @Test
+    public void outputFolderWithoutIndexIsHashed() throws IOException {
+        byte[] first = noise(5000, 1);
+        byte[] second = noise(6000, 2);
+        Files.write(outputFolder.resolve("First.mp3"), first);
+        Files.write(outputFolder.resolve("Second.mp3"), second);
+        Files.write(outputFolder.resolve("Cover.jpg"), noise(100, 3));
+
+        TrackIndex index = TrackIndex.load(outputFolder);
+        assertEquals(2, index.getSize());
+        assertEquals("First.mp3", index.getTrack(hash(first)));
+        assertEquals("Second.mp3", index.getTrack(hash(second)));
+        assertTrue(Files.exists(outputFolder.resolve(TrackIndex.FILE_NAME)));
+
+        // hashes are remembered: next load reads them instead of hashing tracks again
+        Files.write(outputFolder.resolve("Third.mp3"), noise(7000, 4));
+        assertEquals(2, TrackIndex.load(outputFolder).getSize());
+        assertTrue(FileBuilder.assemble(parts(second), outputFolder, "Copy", index).isDuplicate());
+    }
+
+    @Test
+    public void concurrentAssemblersOfSameContentLeaveOneTrack() throws Exception {
+        byte[] track = mpegFrames(40);
+        List<List<Path>> copies = new ArrayList<>();
+        for (int i = 0; i < ASSEMBLERS; i++) {
+            copies.add(parts(track)); // every assembler has its own copy of parts
+        }
+        TrackIndex index = TrackIndex.load(outputFolder);
+
+        ExecutorService executor = Executors.newFixedThreadPool(ASSEMBLERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<BuildResult> results = new ArrayList<>();
+        try {
+            List<Future<BuildResult>> futures = new ArrayList<>();
+            for (List<Path> copy : copies) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return FileBuilder.assemble(copy, outputFolder, "Song", index);
+                }));
+            }
+            start.countDown();
+            for (Future<BuildResult> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<BuildResult> written = results.stream().filter(result -> !result.isDuplicate())
+                .collect(Collectors.toList());
+        assertEquals(1, written.size());
+        Path owner = written.get(0).getTrack();
+        for (BuildResult result : results) {
+            assertEquals(owner.toAbsolutePath(), result.getTrack().toAbsolutePath());
+        }
+        assertArrayEquals(track, Files.readAllBytes(owner));
+        assertEquals(Arrays.asList(TrackIndex.FILE_NAME, owner.getFileName().toString()), listOutputFolder());
+        assertEquals(owner.getFileName().toString(), TrackIndex.load(outputFolder).getTrack(hash(track)));
+    }
+}